@@ -0,0 +1,89 @@
+package com.dark.videostreaming.transcoding.benchmark;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.media.ChunkCommandPlanner;
+import com.dark.videostreaming.transcoding.media.PreviewCommandPlanner;
+import com.dark.videostreaming.transcoding.media.RenditionCommandPlanner;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Plans the ffmpeg invocations of a two hour 1080p source: preview clips, the HLS ladder and a chunked encode.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CommandPlannerBenchmark {
+
+    private static final String LADDER = "1080p:1080:5000:192,720p:720:2800:128,480p:480:1400:128,360p:360:800:96";
+
+    private MediaSource source;
+    private List<Rendition> ladder;
+    private List<Double> keyframes;
+    private List<Path> chunks;
+
+    @Setup
+    public void setup() {
+        MediaInfo info = new MediaInfo(7200, "mov,mp4,m4a,3gp,3g2,mj2", 6_000_000, "h264", 1920, 1080, 25,
+                180_000, 5_800_000, 2, "aac");
+        source = new MediaSource("http://localhost:9000/videos/1700000000000-holiday.mp4?X-Amz-Signature=abc",
+                true, info);
+        keyframes = new ArrayList<>();
+        for (double t = 0; t < info.duration(); t += info.keyframeInterval()) {
+            keyframes.add(t);
+        }
+        chunks = new ArrayList<>();
+        for (int i = 0; i < 240; i++) {
+            chunks.add(Path.of("/tmp/job/chunks", String.format("chunk_%05d.mkv", i)));
+        }
+        ladder = Rendition.parseLadder(LADDER);
+    }
+
+    @Benchmark
+    public List<String> previewStreamCopy() {
+        List<Double> starts = PreviewCommandPlanner.clipStarts(source.info().duration());
+        List<Double> inpoints = PreviewCommandPlanner.alignToKeyframes(starts, keyframes);
+        String list = PreviewCommandPlanner.concatList(source, inpoints);
+        return PreviewCommandPlanner.streamCopyCommand(list, source.info().videoCodec(),
+                PreviewCommandPlanner.PIPE_OUTPUT);
+    }
+
+    @Benchmark
+    public List<String> previewEncode() {
+        List<Double> starts = PreviewCommandPlanner.clipStarts(source.info().duration());
+        return PreviewCommandPlanner.encodeCommand(source, starts, PreviewCommandPlanner.PIPE_OUTPUT);
+    }
+
+    @Benchmark
+    public int renditionLadder() {
+        int arguments = 0;
+        List<Rendition> selected = RenditionCommandPlanner.selectLadder(ladder, source.info());
+        for (Rendition rendition : selected) {
+            arguments += RenditionCommandPlanner.hlsCommand(source, rendition, 6, 2, "/tmp/job/hls").size();
+        }
+        return arguments + RenditionCommandPlanner.masterPlaylist(selected, source.info()).length();
+    }
+
+    @Benchmark
+    public int chunkedEncode() {
+        Rendition rendition = ladder.get(0);
+        int arguments = 0;
+        for (Path chunk : chunks) {
+            arguments += ChunkCommandPlanner.encodeChunkCommand(chunk, rendition, source.info(), 6, 1,
+                    chunk.resolveSibling("encoded.mp4")).size();
+        }
+        return arguments + ChunkCommandPlanner.concatList(chunks).length();
+    }
+
+}
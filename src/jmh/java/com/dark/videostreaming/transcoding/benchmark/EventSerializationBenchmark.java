@@ -0,0 +1,104 @@
+package com.dark.videostreaming.transcoding.benchmark;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.EventDeserializer;
+import com.dark.videostreaming.transcoding.event.EventTypeRegistry;
+import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+// Encodes and decodes the envelopes that go over video.events and video.preview.events. The legacy benchmarks
+// replay the old consumer path: JsonDeserializer into a raw Event, then convertValue on the payload map.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventSerializationBenchmark {
+
+    private static final String TOPIC = "video.events";
+
+    private ObjectMapper objectMapper;
+    private JsonSerializer<Event<?>> serializer;
+    private JsonDeserializer<Event<?>> legacyDeserializer;
+    private EventDeserializer eventDeserializer;
+
+    private Event<VideoUploadedEvent> uploadedEvent;
+    private Event<PreviewUpdateEvent> previewEvent;
+    private byte[] uploadedBytes;
+    private byte[] previewBytes;
+
+    @Setup
+    public void setup() {
+        // Same modules and settings Spring Boot applies to the application's ObjectMapper; the parameter names
+        // module is what lets the legacy path bind the record payloads.
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        serializer = new JsonSerializer<>(objectMapper);
+        serializer.setAddTypeInfo(false);
+        legacyDeserializer = new JsonDeserializer<>(Event.class, objectMapper);
+        legacyDeserializer.addTrustedPackages("*");
+        legacyDeserializer.ignoreTypeHeaders();
+        eventDeserializer = new EventDeserializer(objectMapper, new EventTypeRegistry());
+
+        Instant now = Instant.now();
+        uploadedEvent = new Event<>("VideoUploaded", "1.0", now,
+                new VideoUploadedEvent(42L, "1700000000000-holiday.mp4", 734_003_200L));
+        previewEvent = new Event<>("PreviewUpdateEvent", "1.0", now, PreviewUpdateEvent.builder()
+                .videoId(42L)
+                .name("1700000000000-holiday.mp4")
+                .size(3_145_728L)
+                .status("ready")
+                .createdAt(now)
+                .build());
+        uploadedBytes = serializer.serialize(TOPIC, uploadedEvent);
+        previewBytes = serializer.serialize(TOPIC, previewEvent);
+    }
+
+    @Benchmark
+    public byte[] serializeVideoUploaded() {
+        return serializer.serialize(TOPIC, uploadedEvent);
+    }
+
+    @Benchmark
+    public byte[] serializePreviewUpdate() {
+        return serializer.serialize(TOPIC, previewEvent);
+    }
+
+    @Benchmark
+    public VideoUploadedEvent legacyDeserializeVideoUploaded() {
+        Event<?> event = legacyDeserializer.deserialize(TOPIC, uploadedBytes);
+        return objectMapper.convertValue(event.getPayload(), VideoUploadedEvent.class);
+    }
+
+    @Benchmark
+    public PreviewUpdateEvent legacyDeserializePreviewUpdate() {
+        Event<?> event = legacyDeserializer.deserialize(TOPIC, previewBytes);
+        return objectMapper.convertValue(event.getPayload(), PreviewUpdateEvent.class);
+    }
+
+    @Benchmark
+    public Object deserializeVideoUploaded() {
+        return eventDeserializer.deserialize(TOPIC, uploadedBytes).getPayload();
+    }
+
+    @Benchmark
+    public Object deserializePreviewUpdate() {
+        return eventDeserializer.deserialize(TOPIC, previewBytes).getPayload();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.dark.videostreaming.transcoding.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.media.FrameScorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Scores a luma plane of the sampling resolution, in a direct buffer like the ones read from ffmpeg, and ranks the
+// candidates of one selection.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameScorerBenchmark {
+
+    @Param({ "160x90", "320x180", "640x360" })
+    private String resolution;
+
+    private int width;
+    private int height;
+    private ByteBuffer frame;
+    private List<FrameScorer.Score> candidates;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        frame = ByteBuffer.allocateDirect(width * height);
+        // A gradient with noise on top: edges and texture everywhere, like a real picture and unlike a flat one.
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.put(y * width + x, (byte) Math.min(255, x * 200 / width + random.nextInt(56)));
+            }
+        }
+        candidates = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            candidates.add(FrameScorer.score(frame, width, height));
+        }
+    }
+
+    @Benchmark
+    public FrameScorer.Score score() {
+        return FrameScorer.score(frame, width, height);
+    }
+
+    @Benchmark
+    public int rank() {
+        return FrameScorer.best(candidates);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.dark.videostreaming.transcoding.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cold start of a worker JVM in the fast-start profile, from launch until its context is refreshed and the Kafka
+// listeners would start: the extracted jar as is, with the AOT-generated bean definitions, and with those plus the
+// CDS archive. Needs ./gradlew cdsArchive first; -Dstartup.dir points at another build/cds layout.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class StartupBenchmark {
+
+    @Param({ "jar", "aot", "aot-cds" })
+    private String mode;
+
+    private Path dir;
+    private Path workDir;
+    private List<String> command;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Path.of(System.getProperty("startup.dir", "build/cds")).toAbsolutePath();
+        Path archive = dir.resolve("application.jsa");
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("No CDS archive in " + dir + ", run ./gradlew cdsArchive first");
+        }
+        Path jar;
+        try (Stream<Path> files = Files.list(dir)) {
+            jar = files.filter(file -> file.toString().endsWith(".jar")).findFirst().orElseThrow();
+        }
+        workDir = Files.createTempDirectory("startup-benchmark-");
+        command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (mode.startsWith("aot")) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        if (mode.endsWith("cds")) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        // NOTE: The archive only matches the classpath it was recorded with, so the jar is started by the same
+        // relative name from build/cds as in the training run. The directories the service writes to are moved to
+        // a scratch directory instead.
+        command.addAll(List.of("-Dspring.context.exit=onRefresh", "-jar", jar.getFileName().toString(),
+                "--spring.profiles.active=fast-start",
+                "--transcoding.work-dir=" + workDir.resolve("tmp"),
+                "--transcoding.checkpoint.dir=" + workDir.resolve("checkpoints"),
+                "--transcoding.artifact-cache.dir=" + workDir.resolve("cache"),
+                "--transcoding.dedup.index-file=" + workDir.resolve("dedup-index.tsv")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir.toFile());
+    }
+
+    @Benchmark
+    public int start() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return process.waitFor();
+    }
+
+}
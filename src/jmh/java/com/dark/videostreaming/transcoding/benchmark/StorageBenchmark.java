@@ -0,0 +1,129 @@
+package com.dark.videostreaming.transcoding.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.config.MinioBuckets;
+import com.dark.videostreaming.transcoding.config.MinioConfig;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.ParallelDownloadService;
+import com.dark.videostreaming.transcoding.service.impl.LocalVideoStorageServiceImpl;
+import com.dark.videostreaming.transcoding.service.impl.ParallelDownloadServiceImpl;
+import com.dark.videostreaming.transcoding.service.impl.VideoStorageServiceImpl;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.MinioClient;
+
+// Moves an object through both storage backends the way jobs do. The minio runs need a server, configured with
+// -Dminio.url/-Dminio.username/-Dminio.password (defaults match application.yaml); without one only the local
+// runs report results.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+
+    private static final String OBJECT_NAME = "storage-benchmark.bin";
+    private static final long RANGE_LENGTH = 1024 * 1024;
+
+    @Param({ "local", "minio" })
+    private String backend;
+
+    @Param({ "67108864" })
+    private long fileSize;
+
+    private Path dir;
+    private Path source;
+    private Path target;
+    private MinioStorageService storage;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("storage-benchmark-");
+        source = dir.resolve("source.bin");
+        target = dir.resolve("target.bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(source)) {
+            for (long written = 0; written < fileSize; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, fileSize - written));
+            }
+        }
+        if ("local".equals(backend)) {
+            storage = new LocalVideoStorageServiceImpl(dir.resolve("storage"));
+        } else {
+            MinioClient client = MinioClient.builder()
+                    .endpoint(System.getProperty("minio.url", "http://localhost:9000"))
+                    .credentials(System.getProperty("minio.username", "user"),
+                            System.getProperty("minio.password", "password"))
+                    .build();
+            MinioBuckets buckets = new MinioBuckets(client, List.of(MinioConfig.VIDEO_BUCKET_NAME));
+            buckets.awaitAll();
+            ParallelDownloadService downloads = new ParallelDownloadServiceImpl(new SimpleMeterRegistry(),
+                    16 * 1024 * 1024, 2, 16, 3, 1024 * 1024, 16 * 1024 * 1024);
+            storage = new VideoStorageServiceImpl(buckets, 5 * 1024 * 1024, downloads);
+        }
+        storage.save(source, OBJECT_NAME);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTarget() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storage.delete(OBJECT_NAME);
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public void saveFile() throws Exception {
+        storage.save(source, OBJECT_NAME);
+    }
+
+    @Benchmark
+    public void saveStream() throws Exception {
+        try (InputStream in = Files.newInputStream(source)) {
+            storage.save(in, OBJECT_NAME, fileSize);
+        }
+    }
+
+    @Benchmark
+    public long readFull() throws Exception {
+        try (InputStream in = storage.getInputStream(OBJECT_NAME, 0, fileSize)) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public long readRange() throws Exception {
+        try (InputStream in = storage.getInputStream(OBJECT_NAME, fileSize / 2, RANGE_LENGTH)) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public Path download() throws Exception {
+        storage.download(OBJECT_NAME, target);
+        return target;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.dark.videostreaming.transcoding.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Throughput, end-to-end and per-step latency percentiles of one run, and the wall time of every pipeline stage
+// from the service's own transcoding.stage.duration timers. Lower is better for everything but throughput.
+final class LoadTestReport {
+
+    private static final double[] PERCENTILES = { 50, 95, 99 };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectNode result = objectMapper.createObjectNode();
+
+    LoadTestReport(int jobs, int failed, long wallNanos, Map<String, List<Long>> latencies,
+            MeterRegistry meterRegistry) {
+        result.put("jobs", jobs);
+        result.put("failed", failed);
+        result.put("wallSeconds", wallNanos / 1e9);
+        result.put("jobsPerMinute", (jobs - failed) / (wallNanos / 6e10));
+
+        ObjectNode latencyNode = result.putObject("latencyMillis");
+        latencies.forEach((step, samples) -> {
+            List<Long> sorted = samples.stream().sorted().toList();
+            ObjectNode stepNode = latencyNode.putObject(step);
+            for (double percentile : PERCENTILES) {
+                stepNode.put("p" + (int) percentile, percentile(sorted, percentile) / 1e6);
+            }
+            stepNode.put("max", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1) / 1e6);
+        });
+
+        Map<String, Timer> stages = new TreeMap<>();
+        for (Timer timer : meterRegistry.find("transcoding.stage.duration").tag("outcome", "success").timers()) {
+            stages.put(timer.getId().getTag("pipeline") + "." + timer.getId().getTag("stage"), timer);
+        }
+        ObjectNode stageNode = result.putObject("stages");
+        stages.forEach((stage, timer) -> {
+            ObjectNode node = stageNode.putObject(stage);
+            node.put("count", timer.count());
+            node.put("meanMillis", timer.mean(TimeUnit.MILLISECONDS));
+            node.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+            node.put("totalSeconds", timer.totalTime(TimeUnit.SECONDS));
+        });
+    }
+
+    // Nearest rank, so every reported value is a latency some job actually had.
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    double jobsPerMinute() {
+        return result.get("jobsPerMinute").asDouble();
+    }
+
+    String format(JsonNode baseline) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%d jobs (%d failed) in %.1f s%n", result.get("jobs").asInt(),
+                result.get("failed").asInt(), result.get("wallSeconds").asDouble()));
+        report.append(line("throughput (jobs/min)", jobsPerMinute(), value(baseline, "jobsPerMinute")));
+        result.get("latencyMillis").fields().forEachRemaining(step -> step.getValue().fields().forEachRemaining(
+                metric -> report.append(line(step.getKey() + " " + metric.getKey() + " (ms)",
+                        metric.getValue().asDouble(),
+                        value(baseline, "latencyMillis", step.getKey(), metric.getKey())))));
+        result.get("stages").fields().forEachRemaining(stage -> report.append(line(
+                "stage " + stage.getKey() + " mean (ms)", stage.getValue().get("meanMillis").asDouble(),
+                value(baseline, "stages", stage.getKey(), "meanMillis"))));
+        return report.toString();
+    }
+
+    // Throughput drops and p95 latency rises beyond maxRegression, as a fraction of the baseline.
+    List<String> regressions(JsonNode baseline, double maxRegression) {
+        List<String> regressions = new ArrayList<>();
+        Double baseThroughput = value(baseline, "jobsPerMinute");
+        if (baseThroughput != null && jobsPerMinute() < baseThroughput * (1 - maxRegression)) {
+            regressions.add(String.format(Locale.US, "throughput %.2f jobs/min, baseline %.2f", jobsPerMinute(),
+                    baseThroughput));
+        }
+        result.get("latencyMillis").fields().forEachRemaining(step -> {
+            Double base = value(baseline, "latencyMillis", step.getKey(), "p95");
+            double current = step.getValue().get("p95").asDouble();
+            if (base != null && current > base * (1 + maxRegression)) {
+                regressions.add(String.format(Locale.US, "%s p95 %.0f ms, baseline %.0f ms", step.getKey(), current,
+                        base));
+            }
+        });
+        return regressions;
+    }
+
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), result);
+    }
+
+    private static Double value(JsonNode baseline, String... path) {
+        JsonNode node = baseline;
+        for (String field : path) {
+            if (node == null) {
+                return null;
+            }
+            node = node.get(field);
+        }
+        return node == null || !node.isNumber() ? null : node.asDouble();
+    }
+
+    private static String line(String name, double current, Double baseline) {
+        if (baseline == null || baseline == 0) {
+            return String.format(Locale.US, "  %-40s %12.1f%n", name, current);
+        }
+        return String.format(Locale.US, "  %-40s %12.1f   baseline %12.1f   %+6.1f%%%n", name, current, baseline,
+                (current - baseline) / baseline * 100);
+    }
+
+}
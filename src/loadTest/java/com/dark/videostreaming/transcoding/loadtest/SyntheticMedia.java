@@ -0,0 +1,74 @@
+package com.dark.videostreaming.transcoding.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Test sources rendered by ffmpeg's testsrc2 pattern with a sine tone, so every run encodes the same pictures
+// without shipping any media. A spec reads seconds:widthxheight:codec, e.g. 30:1280x720:h264.
+record SyntheticMedia(
+        double duration,
+        int width,
+        int height,
+        String codec) {
+
+    static List<SyntheticMedia> parse(String specs) {
+        List<SyntheticMedia> media = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            String[] parts = spec.trim().split(":");
+            String[] size = parts[1].split("x");
+            media.add(new SyntheticMedia(Double.parseDouble(parts[0]), Integer.parseInt(size[0]),
+                    Integer.parseInt(size[1]), parts[2]));
+        }
+        return media;
+    }
+
+    String name() {
+        return (int) duration + "s-" + width + "x" + height + "-" + codec + ("vp9".equals(codec) ? ".webm" : ".mp4");
+    }
+
+    Path generate(Path dir) throws IOException, InterruptedException {
+        Path output = dir.resolve(name());
+        if (Files.exists(output)) {
+            return output;
+        }
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg", "-v", "error", "-y",
+                "-f", "lavfi", "-i", "testsrc2=size=" + width + "x" + height + ":rate=25:duration=" + duration,
+                "-f", "lavfi", "-i", "sine=frequency=440:duration=" + duration,
+                "-g", "50"));
+        command.addAll(switch (codec) {
+            case "h264" -> List.of("-c:v", "libx264", "-preset", "veryfast", "-pix_fmt", "yuv420p", "-c:a", "aac");
+            case "hevc" -> List.of("-c:v", "libx265", "-preset", "veryfast", "-pix_fmt", "yuv420p", "-tag:v", "hvc1",
+                    "-c:a", "aac");
+            case "vp9" -> List.of("-c:v", "libvpx-vp9", "-deadline", "realtime", "-cpu-used", "8", "-c:a",
+                    "libopus");
+            default -> throw new IllegalArgumentException("Unsupported codec " + codec);
+        });
+        command.add(output.toString());
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (!process.waitFor(10, TimeUnit.MINUTES) || process.exitValue() != 0) {
+            process.destroyForcibly();
+            Files.deleteIfExists(output);
+            throw new IOException("ffmpeg failed to generate " + name());
+        }
+        return output;
+    }
+
+    static boolean ffmpegAvailable() {
+        try {
+            Process process = new ProcessBuilder("ffmpeg", "-version").redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
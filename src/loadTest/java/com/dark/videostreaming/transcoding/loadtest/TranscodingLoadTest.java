@@ -0,0 +1,222 @@
+package com.dark.videostreaming.transcoding.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.service.VideoStorageService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// The whole preview and thumbnail flow under load: VideoUploaded events go through an embedded broker into
+// SimpleConsumer, sources are served by the local storage backend, and a job counts as done when its thumbnail
+// is reported ready. Run with ./gradlew loadTest, settings are in application-loadtest.yaml.
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@EmbeddedKafka(partitions = 3, bootstrapServersProperty = "spring.kafka.bootstrap-servers",
+        topics = { TranscodingLoadTest.VIDEO_TOPIC, TranscodingLoadTest.PREVIEW_TOPIC,
+                TranscodingLoadTest.THUMBNAIL_TOPIC })
+class TranscodingLoadTest {
+
+    static final String VIDEO_TOPIC = "video.events";
+    static final String PREVIEW_TOPIC = "video.preview.events";
+    static final String THUMBNAIL_TOPIC = "video.thumbnail.events";
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingLoadTest.class);
+
+    @TempDir
+    static Path root;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private KafkaTemplate<String, Event<?>> kafkaTemplate;
+
+    @Autowired
+    private VideoStorageService videoStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${loadtest.jobs}")
+    private int jobs;
+
+    @Value("${loadtest.media}")
+    private String media;
+
+    @Value("${loadtest.rate}")
+    private double rate;
+
+    @Value("${loadtest.timeout}")
+    private Duration timeout;
+
+    @Value("${loadtest.baseline}")
+    private Path baselineFile;
+
+    @Value("${loadtest.report}")
+    private Path reportFile;
+
+    @Value("${loadtest.update-baseline}")
+    private boolean updateBaseline;
+
+    @Value("${loadtest.max-regression}")
+    private double maxRegression;
+
+    @DynamicPropertySource
+    static void directories(DynamicPropertyRegistry registry) {
+        registry.add("storage.local.root", () -> root.resolve("storage").toString());
+        registry.add("transcoding.work-dir", () -> root.resolve("tmp").toString());
+        registry.add("transcoding.checkpoint.dir", () -> root.resolve("checkpoints").toString());
+        registry.add("transcoding.artifact-cache.dir", () -> root.resolve("cache").toString());
+        registry.add("transcoding.dedup.index-file", () -> root.resolve("dedup-index.tsv").toString());
+    }
+
+    @Test
+    void previewAndThumbnailPipeline() throws Exception {
+        Assumptions.assumeTrue(SyntheticMedia.ffmpegAvailable(), "ffmpeg is not on the PATH");
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container.isRunning()) {
+                ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+            }
+        }
+
+        // Sources are rendered once and stored under a new name per job, before the clock starts.
+        Path mediaDir = Files.createDirectories(root.resolve("media"));
+        List<Path> sources = new ArrayList<>();
+        for (SyntheticMedia spec : SyntheticMedia.parse(media)) {
+            sources.add(spec.generate(mediaDir));
+        }
+        List<VideoUploadedEvent> uploads = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            Path source = sources.get(i % sources.size());
+            String name = (i + 1) + "-" + source.getFileName();
+            videoStorageService.save(source, name);
+            uploads.add(new VideoUploadedEvent(i + 1, name, Files.size(source)));
+        }
+
+        Map<Long, Long> published = new ConcurrentHashMap<>();
+        Map<Long, Long> previewReady = new HashMap<>();
+        Map<Long, Long> thumbnailReady = new HashMap<>();
+        Set<Long> failed = ConcurrentHashMap.newKeySet();
+        Map<String, Object> props = KafkaTestUtils.consumerProps("load-test", "false", embeddedKafka);
+        try (Consumer<String, String> consumer = new KafkaConsumer<>(props, new StringDeserializer(),
+                new StringDeserializer())) {
+            consumer.subscribe(List.of(PREVIEW_TOPIC, THUMBNAIL_TOPIC));
+            CompletableFuture<Void> publishing = CompletableFuture.runAsync(() -> publish(uploads, published));
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (thumbnailReady.size() + failed.size() < jobs && System.nanoTime() < deadline) {
+                if (publishing.isCompletedExceptionally()) {
+                    publishing.join();
+                }
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    JsonNode payload = objectMapper.readTree(record.value()).get("payload");
+                    long videoId = payload.get("videoId").asLong();
+                    String status = payload.get("status").asText();
+                    if ("failed".equals(status)) {
+                        failed.add(videoId);
+                    } else if ("ready".equals(status)) {
+                        (PREVIEW_TOPIC.equals(record.topic()) ? previewReady : thumbnailReady)
+                                .putIfAbsent(videoId, System.nanoTime());
+                    }
+                }
+            }
+        }
+
+        Map<String, List<Long>> latencies = new LinkedHashMap<>();
+        latencies.put("end-to-end", new ArrayList<>());
+        latencies.put("preview", new ArrayList<>());
+        latencies.put("thumbnail", new ArrayList<>());
+        long firstPublished = published.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        long lastDone = firstPublished;
+        for (Map.Entry<Long, Long> done : thumbnailReady.entrySet()) {
+            long start = published.get(done.getKey());
+            long preview = previewReady.getOrDefault(done.getKey(), done.getValue());
+            latencies.get("end-to-end").add(done.getValue() - start);
+            latencies.get("preview").add(preview - start);
+            latencies.get("thumbnail").add(done.getValue() - preview);
+            lastDone = Math.max(lastDone, done.getValue());
+        }
+
+        LoadTestReport report = new LoadTestReport(jobs, failed.size(), lastDone - firstPublished, latencies,
+                meterRegistry);
+        JsonNode baseline = Files.exists(baselineFile) ? objectMapper.readTree(baselineFile.toFile()) : null;
+        log.info("Load test against {}:\n{}", baseline == null ? "no baseline" : baselineFile,
+                report.format(baseline));
+        report.write(reportFile);
+        if (updateBaseline) {
+            report.write(baselineFile);
+        }
+
+        assertEquals(jobs, thumbnailReady.size() + failed.size(), "jobs still unfinished after " + timeout);
+        assertTrue(failed.isEmpty(), "failed jobs: " + failed);
+        if (baseline != null && maxRegression > 0) {
+            List<String> regressions = report.regressions(baseline, maxRegression);
+            assertTrue(regressions.isEmpty(), "regressions against the baseline: " + regressions);
+        }
+    }
+
+    // All at once, or spread out at rate jobs per minute.
+    private void publish(List<VideoUploadedEvent> uploads, Map<Long, Long> published) {
+        long pause = rate > 0 ? (long) (60_000 / rate) : 0;
+        try {
+            for (VideoUploadedEvent upload : uploads) {
+                published.put(upload.videoId(), System.nanoTime());
+                kafkaTemplate.send(VIDEO_TOPIC, String.valueOf(upload.videoId()),
+                        new Event<VideoUploadedEvent>("VideoUploaded", "1.0", Instant.now(), upload));
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing", e);
+        }
+    }
+
+}
@@ -1,12 +1,17 @@
 package com.dark.videostreaming.transcoding.config;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.EventDeserializer;
+import com.dark.videostreaming.transcoding.event.EventTypeRegistry;
+import com.dark.videostreaming.transcoding.event.consumer.OffsetTracker;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -15,7 +20,13 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.util.backoff.FixedBackOff;
 
 @EnableKafka
 @Configuration
@@ -24,29 +35,83 @@ public class KafkaConsumerConfig {
     @Value(value = "${spring.kafka.bootstrap-servers}")
     String bootstrapAddress;
 
+    // Should match the partition count of the busiest topic; extra consumers just sit idle.
+    @Value(value = "${transcoding.kafka.concurrency:3}")
+    int concurrency;
+
+    @Value(value = "${transcoding.kafka.max-poll-records:10}")
+    int maxPollRecords;
+
+    @Value(value = "${transcoding.kafka.dead-letter-suffix:.dlt}")
+    String deadLetterSuffix;
+
     @Bean
-    public ConsumerFactory<String, Event<?>> ConsumerFactory(ObjectMapper objectMapper) {
+    public ConsumerFactory<String, Event<?>> ConsumerFactory(ObjectMapper objectMapper,
+            EventTypeRegistry eventTypeRegistry) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "transcoding-service");
         configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
 
-        // TODO: Polymorphic deserializer??
-        JsonDeserializer<Event<?>> deserializer = new JsonDeserializer<>(Event.class, objectMapper);
-        deserializer.addTrustedPackages("*"); // WARN: Be Careful of RCE attacks.
-        deserializer.setUseTypeMapperForKey(false); // NOTE: A workaround for Type Mismatch Of Header Key typeID and
-                                                    // consumer Object Mapping
-        deserializer.ignoreTypeHeaders();
+        // NOTE: Payload types come from the EventTypeRegistry, never from type headers, so nothing outside the
+        // registered event models can be instantiated from a record.
+        EventDeserializer deserializer = new EventDeserializer(objectMapper, eventTypeRegistry);
 
-        return new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(), deserializer);
+        // A record that can't be decoded reaches the error handler (or the batch as a null) instead of failing
+        // the poll over and over.
+        return new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(deserializer));
+    }
+
+    // Poison records go to "<topic>.dlt" with the exception in the headers. Undecodable ones are sent as the
+    // bytes they arrived with, the rest as the event they were decoded to.
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<String, Event<?>> kafkaTemplate,
+            KafkaTemplate<String, byte[]> deadLetterKafkaTemplate) {
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, deadLetterKafkaTemplate);
+        templates.put(Event.class, kafkaTemplate);
+        return new DeadLetterPublishingRecoverer(templates,
+                (record, e) -> new TopicPartition(record.topic() + deadLetterSuffix, -1));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Event<?>> kafkaListenerContainerFactory(
-            ConsumerFactory<String, Event<?>> consumerFactory) {
+            ConsumerFactory<String, Event<?>> consumerFactory, DeadLetterPublishingRecoverer recoverer,
+            OffsetTracker offsetTracker) {
+        ConcurrentKafkaListenerContainerFactory<String, Event<?>> factory = containerFactory(consumerFactory,
+                recoverer, false);
+        factory.getContainerProperties().setConsumerRebalanceListener(offsetTracker);
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Event<?>> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, Event<?>> consumerFactory, DeadLetterPublishingRecoverer recoverer) {
+        return containerFactory(consumerFactory, recoverer, true);
+    }
+
+    private ConcurrentKafkaListenerContainerFactory<String, Event<?>> containerFactory(
+            ConsumerFactory<String, Event<?>> consumerFactory, DeadLetterPublishingRecoverer recoverer,
+            boolean batchListener) {
         ConcurrentKafkaListenerContainerFactory<String, Event<?>> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(batchListener);
+        // NOTE: Records are acknowledged from the job threads once the artifacts are stored. Record listeners go
+        // through OffsetTracker, which lets jobs finish out of order and never acknowledges past a running one.
+        // The container's async acks would do the same but pause the consumer until every record of the last
+        // poll is acknowledged, so one long job would stop its partitions; only the batch listener, which holds
+        // back its whole poll anyway, keeps them so batches finishing out of order don't commit past each other.
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(batchListener);
+        // Jobs retry their own stages, so whatever still reaches the container is dead-lettered right away. Its
+        // offset is left to the next acknowledgment, committing it here could pass jobs still running before it.
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+        errorHandler.setAckAfterHandle(batchListener);
+        factory.setCommonErrorHandler(errorHandler);
         return factory;
     }
 
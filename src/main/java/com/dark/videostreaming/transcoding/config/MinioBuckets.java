@@ -0,0 +1,69 @@
+package com.dark.videostreaming.transcoding.config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.minio.BucketExistsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+
+// Creates the buckets that are missing. Every bucket is checked on its own virtual thread as soon as this is
+// created, and a storage call only waits for the check of its own bucket, so nothing has to wait for all of them.
+public class MinioBuckets {
+
+    private final MinioClient client;
+    private final Map<String, CompletableFuture<Void>> checks = new ConcurrentHashMap<>();
+
+    public MinioBuckets(MinioClient client, List<String> buckets) {
+        this.client = client;
+        for (String bucket : buckets) {
+            checks.put(bucket, check(bucket));
+        }
+    }
+
+    public MinioClient client() {
+        return client;
+    }
+
+    public void await(String bucket) throws Exception {
+        CompletableFuture<Void> check = checks.computeIfAbsent(bucket, this::check);
+        try {
+            check.join();
+        } catch (CompletionException e) {
+            // MinIO may just not be reachable yet; the next call starts a new check.
+            checks.remove(bucket, check);
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void awaitAll() throws Exception {
+        for (String bucket : List.copyOf(checks.keySet())) {
+            await(bucket);
+        }
+    }
+
+    private CompletableFuture<Void> check(String bucket) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!client.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+                    client.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+                }
+            } catch (ErrorResponseException e) {
+                // Another node that scaled up at the same time created it first.
+                if (!"BucketAlreadyOwnedByYou".equals(e.errorResponse().code())) {
+                    throw new CompletionException(e);
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, runnable -> Thread.ofVirtual().name("minio-bucket-" + bucket).start(runnable));
+    }
+
+}
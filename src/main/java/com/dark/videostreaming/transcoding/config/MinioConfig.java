@@ -1,19 +1,23 @@
 package com.dark.videostreaming.transcoding.config;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import io.minio.BucketExistsArgs;
-import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 
+// NOTE: The bucket names below are shared with the local filesystem backend, only the client is MinIO specific.
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
 @Configuration
 public class MinioConfig {
 
     public static final String VIDEO_BUCKET_NAME = "videos";
     public static final String PREVIEW_BUCKET_NAME = "previews";
     public static final String THUMBNAIL_BUCKET_NAME = "thumbnails";
+    public static final String RENDITION_BUCKET_NAME = "renditions";
 
     @Value("${minio.url}")
     private String minioUrl;
@@ -24,31 +28,28 @@ public class MinioConfig {
     @Value("${minio.password}")
     private String minioPassword;
 
+    // NOTE: Eager holds the startup until every bucket is there. Lazy lets the Kafka listeners start right away
+    // and makes each storage call wait for its own bucket instead, for autoscaled nodes that should pick up work
+    // within seconds.
+    @Value("${minio.lazy-bucket-check:false}")
+    private boolean lazyBucketCheck;
+
     @Bean
-    public MinioClient minioClient() throws Exception {
-        MinioClient client = MinioClient.builder()
+    public MinioClient minioClient() {
+        return MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(minioUser, minioPassword)
                 .build();
-        if (!client.bucketExists(BucketExistsArgs.builder().bucket(VIDEO_BUCKET_NAME).build())) {
-            client.makeBucket(
-                    MakeBucketArgs.builder()
-                            .bucket(VIDEO_BUCKET_NAME)
-                            .build());
-        }
-        if (!client.bucketExists(BucketExistsArgs.builder().bucket(PREVIEW_BUCKET_NAME).build())) {
-            client.makeBucket(
-                    MakeBucketArgs.builder()
-                            .bucket(PREVIEW_BUCKET_NAME)
-                            .build());
-        }
-        if (!client.bucketExists(BucketExistsArgs.builder().bucket(THUMBNAIL_BUCKET_NAME).build())) {
-            client.makeBucket(
-                    MakeBucketArgs.builder()
-                            .bucket(THUMBNAIL_BUCKET_NAME)
-                            .build());
+    }
+
+    @Bean
+    public MinioBuckets minioBuckets(MinioClient minioClient) throws Exception {
+        MinioBuckets buckets = new MinioBuckets(minioClient,
+                List.of(VIDEO_BUCKET_NAME, PREVIEW_BUCKET_NAME, THUMBNAIL_BUCKET_NAME, RENDITION_BUCKET_NAME));
+        if (!lazyBucketCheck) {
+            buckets.awaitAll();
         }
-        return client;
+        return buckets;
     }
 
 }
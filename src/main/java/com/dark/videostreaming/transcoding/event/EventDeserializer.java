@@ -0,0 +1,79 @@
+package com.dark.videostreaming.transcoding.event;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Decodes an Event envelope and its payload in a single streaming pass, picking the payload class from the
+// EventTypeRegistry. Producers write eventType and version before the payload, so the payload normally binds
+// straight from the parser; only an out-of-order envelope gets its payload buffered first.
+public class EventDeserializer implements Deserializer<Event<?>> {
+
+    private final ObjectMapper objectMapper;
+    private final EventTypeRegistry registry;
+
+    public EventDeserializer(ObjectMapper objectMapper, EventTypeRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+    }
+
+    @Override
+    public Event<?> deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try (JsonParser parser = objectMapper.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Event on " + topic + " is not a JSON object");
+            }
+            String eventType = null;
+            String version = null;
+            Instant timestamp = null;
+            Object payload = null;
+            TokenBuffer bufferedPayload = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "eventType" -> eventType = parser.getValueAsString();
+                    case "version" -> version = parser.getValueAsString();
+                    case "timestamp" -> timestamp = objectMapper.readValue(parser, Instant.class);
+                    case "payload" -> {
+                        if (eventType != null && version != null) {
+                            payload = readPayload(parser, eventType, version);
+                        } else {
+                            bufferedPayload = objectMapper.readValue(parser, TokenBuffer.class);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (bufferedPayload != null) {
+                try (JsonParser payloadParser = bufferedPayload.asParser(objectMapper)) {
+                    payloadParser.nextToken();
+                    payload = readPayload(payloadParser, eventType, version);
+                }
+            }
+            return new Event<>(eventType, version, timestamp, payload);
+        } catch (IOException e) {
+            throw new SerializationException("Failed to decode event on " + topic, e);
+        }
+    }
+
+    private Object readPayload(JsonParser parser, String eventType, String version) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        Class<?> payloadType = registry.payloadType(eventType, version);
+        // Unknown types stay a tree, the consumer has no handler for them anyway.
+        return objectMapper.readValue(parser, payloadType != null ? payloadType : Object.class);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.dark.videostreaming.transcoding.event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.RenditionUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.ThumbnailUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.TrickplayUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+
+import org.springframework.stereotype.Component;
+
+// Maps an envelope's eventType and major version to the payload class it carries. Minor versions only ever add
+// fields, which the ObjectMapper ignores, so they decode into the same class.
+@Component
+public class EventTypeRegistry {
+
+    private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+
+    public EventTypeRegistry() {
+        register("VideoUploaded", 1, VideoUploadedEvent.class);
+        register("PreviewUpdateEvent", 1, PreviewUpdateEvent.class);
+        register("ThumbnailUpdateEvent", 1, ThumbnailUpdateEvent.class);
+        register("RenditionUpdateEvent", 1, RenditionUpdateEvent.class);
+        register("TrickplayUpdateEvent", 1, TrickplayUpdateEvent.class);
+    }
+
+    public void register(String eventType, int majorVersion, Class<?> payloadType) {
+        payloadTypes.put(key(eventType, majorVersion), payloadType);
+    }
+
+    public Class<?> payloadType(String eventType, String version) {
+        if (eventType == null) {
+            return null;
+        }
+        return payloadTypes.get(key(eventType, majorVersion(version)));
+    }
+
+    private static int majorVersion(String version) {
+        if (version == null || version.isBlank()) {
+            return 1;
+        }
+        int dot = version.indexOf('.');
+        try {
+            return Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String key(String eventType, int majorVersion) {
+        return eventType + "@" + majorVersion;
+    }
+
+}
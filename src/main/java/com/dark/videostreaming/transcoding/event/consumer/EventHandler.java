@@ -0,0 +1,14 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface EventHandler<T> {
+
+    String eventType();
+
+    Class<T> payloadType();
+
+    // The record is acknowledged once the returned future completes.
+    CompletableFuture<Void> handle(T payload);
+
+}
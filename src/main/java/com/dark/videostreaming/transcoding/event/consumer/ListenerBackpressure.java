@@ -0,0 +1,45 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// Pauses every listener while the scheduler's queue is full and resumes them once jobs drain. A paused container
+// keeps polling, so it stays in the group and keeps its partitions, but gets no records: new records wait in
+// Kafka until this node resumes, they are not handed to nodes that still have room.
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class ListenerBackpressure {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final TranscodingScheduler transcodingScheduler;
+
+    public void afterSubmit() {
+        if (!transcodingScheduler.hasCapacity()) {
+            for (MessageListenerContainer container : registry.getListenerContainers()) {
+                if (!container.isPauseRequested()) {
+                    log.info("Job queue is full, pausing {}", container.getListenerId());
+                    container.pause();
+                }
+            }
+        }
+    }
+
+    public void afterCompletion() {
+        if (transcodingScheduler.hasCapacity()) {
+            for (MessageListenerContainer container : registry.getListenerContainers()) {
+                if (container.isPauseRequested()) {
+                    log.info("Job queue has room again, resuming {}", container.getListenerId());
+                    container.resume();
+                }
+            }
+        }
+    }
+
+}
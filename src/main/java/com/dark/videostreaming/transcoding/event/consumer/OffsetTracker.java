@@ -0,0 +1,85 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Lets jobs of one partition finish in any order without holding back new records. A finished record is only
+// acknowledged once every record before it on its partition has finished too, and then through the last of them,
+// so the committed offset never passes a job that is still running. A partition that moves to another consumer
+// is forgotten; its jobs still running here are left to be redelivered to the new owner.
+@Slf4j
+@Component
+public class OffsetTracker implements ConsumerAwareRebalanceListener {
+
+    // Offsets of the records handed to jobs, with the acknowledgment once the job has finished; guarded by the map.
+    private final Map<TopicPartition, TreeMap<Long, Acknowledgment>> partitions = new ConcurrentHashMap<>();
+
+    // Called on the consumer thread, so the offsets of a partition come in order.
+    public void received(ConsumerRecord<?, ?> record) {
+        TreeMap<Long, Acknowledgment> offsets = partitions.computeIfAbsent(
+                new TopicPartition(record.topic(), record.partition()), partition -> new TreeMap<>());
+        synchronized (offsets) {
+            offsets.putIfAbsent(record.offset(), null);
+        }
+    }
+
+    public void done(ConsumerRecord<?, ?> record, Acknowledgment ack) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        TreeMap<Long, Acknowledgment> offsets = partitions.get(partition);
+        if (offsets == null) {
+            log.debug("{} was revoked, leaving offset {} to its new owner", partition, record.offset());
+            return;
+        }
+        Acknowledgment last = null;
+        synchronized (offsets) {
+            // Revoking clears the offsets, also of a partition looked up just before, since acknowledging for a
+            // partition this consumer no longer owns could move the committed offset back.
+            if (!offsets.containsKey(record.offset())) {
+                log.debug("{} was revoked, leaving offset {} to its new owner", partition, record.offset());
+                return;
+            }
+            offsets.put(record.offset(), ack);
+            while (!offsets.isEmpty() && offsets.firstEntry().getValue() != null) {
+                last = offsets.pollFirstEntry().getValue();
+            }
+        }
+        // NOTE: The container keeps the highest offset acknowledged per partition and commits that, so acking the
+        // last finished record of the run covers all of them.
+        if (last != null) {
+            last.acknowledge();
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        forget(revoked);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+        forget(lost);
+    }
+
+    private void forget(Collection<TopicPartition> revoked) {
+        for (TopicPartition partition : revoked) {
+            TreeMap<Long, Acknowledgment> offsets = partitions.remove(partition);
+            if (offsets != null) {
+                synchronized (offsets) {
+                    offsets.clear();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
+import com.dark.videostreaming.transcoding.service.ThumbnailGenerationService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Component
+public class PreviewUpdateHandler implements EventHandler<PreviewUpdateEvent> {
+
+    private final ThumbnailGenerationService thumbnailGenerationService;
+
+    @Value("${transcoding.fused.enabled:false}")
+    private boolean fusedEnabled;
+
+    @Override
+    public String eventType() {
+        return "PreviewUpdateEvent";
+    }
+
+    @Override
+    public Class<PreviewUpdateEvent> payloadType() {
+        return PreviewUpdateEvent.class;
+    }
+
+    @Override
+    public CompletableFuture<Void> handle(PreviewUpdateEvent payload) {
+        // A fused job has made the thumbnail in the same pass as the preview.
+        if (fusedEnabled || !"ready".equals(payload.getStatus())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return thumbnailGenerationService.generateThumbnail(payload);
+    }
+
+}
@@ -1,44 +1,107 @@
 package com.dark.videostreaming.transcoding.event.consumer;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import com.dark.videostreaming.transcoding.event.Event;
-import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
-import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
-import com.dark.videostreaming.transcoding.service.PreviewGeneratorService;
-import com.dark.videostreaming.transcoding.service.ThumbnailGenerationService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
 @Component
 public class SimpleConsumer {
 
-    private final ObjectMapper objectMapper;
-    private final PreviewGeneratorService previewGeneratorService;
-    private final ThumbnailGenerationService thumbnailGenerationService;
+    private final Map<String, EventHandler<?>> handlers;
+    private final ListenerBackpressure listenerBackpressure;
+    private final OffsetTracker offsetTracker;
+    private final DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
 
-    @KafkaListener(topics = "video.events")
-    public void listenVideoToEvents(Event<?> event) {
-        Object payload = event.getPayload();
+    public SimpleConsumer(List<EventHandler<?>> handlers, ListenerBackpressure listenerBackpressure,
+            OffsetTracker offsetTracker, DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        this.handlers = handlers.stream().collect(Collectors.toMap(EventHandler::eventType, Function.identity()));
+        this.listenerBackpressure = listenerBackpressure;
+        this.offsetTracker = offsetTracker;
+        this.deadLetterPublishingRecoverer = deadLetterPublishingRecoverer;
+    }
 
-        if ("VideoUploaded".equals(event.getEventType())) {
-            VideoUploadedEvent data = objectMapper.convertValue(payload, VideoUploadedEvent.class);
-            previewGeneratorService.generatePreview(data);
-        }
+    @KafkaListener(id = "videoEvents", topics = "video.events",
+            autoStartup = "#{!${transcoding.kafka.batch-listener:false}}")
+    public void listenVideoToEvents(ConsumerRecord<String, Event<?>> record, Acknowledgment ack) {
+        offsetTracker.received(record);
+        acknowledgeWhenDone(dispatch(record), () -> offsetTracker.done(record, ack));
+    }
+
+    // NOTE: The batch is acknowledged as a whole, so one slow job holds back the offsets of the whole poll.
+    @KafkaListener(id = "videoEventsBatch", topics = "video.events",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${transcoding.kafka.batch-listener:false}")
+    public void listenVideoToEventsBatch(List<ConsumerRecord<String, Event<?>>> records, Acknowledgment ack) {
+        CompletableFuture<?>[] jobs = records.stream()
+                .map(this::dispatch)
+                .toArray(CompletableFuture[]::new);
+        acknowledgeWhenDone(CompletableFuture.allOf(jobs), ack::acknowledge);
+    }
+
+    @KafkaListener(id = "previewEvents", topics = "video.preview.events")
+    public void listenToPreviewEvents(ConsumerRecord<String, Event<?>> record, Acknowledgment ack) {
+        offsetTracker.received(record);
+        acknowledgeWhenDone(dispatch(record), () -> offsetTracker.done(record, ack));
     }
 
-    @KafkaListener(topics = "video.preview.events")
-    public void listenToPreviewEvents(Event<?> event) {
-        if ("PreviewUpdateEvent".equals(event.getEventType())) {
-            PreviewUpdateEvent data = objectMapper.convertValue(event.getPayload(), PreviewUpdateEvent.class);
-            if ("ready".equals(data.getStatus())) {
-                thumbnailGenerationService.generateThumbnail(data);
+    // A job that still fails after its stage retries sends its record to the dead-letter topic, so it can be
+    // looked at and replayed instead of being lost behind the committed offset.
+    private CompletableFuture<Void> dispatch(ConsumerRecord<String, Event<?>> record) {
+        if (record.value() == null) {
+            // Only batches get here; the error handler has the raw bytes of undecodable single records.
+            deadLetterPublishingRecoverer.accept(record, new IllegalArgumentException("Undecodable event"));
+            return CompletableFuture.completedFuture(null);
+        }
+        return dispatch(record.value()).whenComplete((result, e) -> {
+            if (e != null) {
+                deadLetterPublishingRecoverer.accept(record,
+                        e instanceof CompletionException && e.getCause() instanceof Exception cause
+                                ? cause
+                                : new IllegalStateException(e));
             }
+        });
+    }
+
+    private CompletableFuture<Void> dispatch(Event<?> event) {
+        EventHandler<?> handler = handlers.get(event.getEventType());
+        if (handler == null || !handler.payloadType().isInstance(event.getPayload())) {
+            log.debug("No handler for {} version {}, skipping", event.getEventType(), event.getVersion());
+            return CompletableFuture.completedFuture(null);
+        }
+        return handle(handler, event.getPayload());
+    }
+
+    private static <T> CompletableFuture<Void> handle(EventHandler<T> handler, Object payload) {
+        return handler.handle(handler.payloadType().cast(payload));
+    }
+
+    private void acknowledgeWhenDone(CompletableFuture<Void> jobs, Runnable acknowledge) {
+        if (jobs.isDone()) {
+            acknowledge.run();
+            return;
         }
+        listenerBackpressure.afterSubmit();
+        // NOTE: Failed jobs are acknowledged too, they have already published their "failed" status and gone to
+        // the dead-letter topic. A crash before this point leaves the offset uncommitted, so the record is
+        // redelivered to whoever owns the partition next.
+        jobs.whenComplete((result, e) -> {
+            acknowledge.run();
+            listenerBackpressure.afterCompletion();
+        });
     }
+
 }
@@ -0,0 +1,61 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.service.FusedTranscodingService;
+import com.dark.videostreaming.transcoding.service.PreviewGeneratorService;
+import com.dark.videostreaming.transcoding.service.RenditionTranscodingService;
+import com.dark.videostreaming.transcoding.service.TrickplayGenerationService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Component
+public class VideoUploadedHandler implements EventHandler<VideoUploadedEvent> {
+
+    private final PreviewGeneratorService previewGeneratorService;
+    private final RenditionTranscodingService renditionTranscodingService;
+    private final TrickplayGenerationService trickplayGenerationService;
+    private final FusedTranscodingService fusedTranscodingService;
+
+    @Value("${transcoding.fused.enabled:false}")
+    private boolean fusedEnabled;
+
+    @Value("${transcoding.renditions.enabled:false}")
+    private boolean renditionsEnabled;
+
+    @Value("${transcoding.trickplay.enabled:false}")
+    private boolean trickplayEnabled;
+
+    @Override
+    public String eventType() {
+        return "VideoUploaded";
+    }
+
+    @Override
+    public Class<VideoUploadedEvent> payloadType() {
+        return VideoUploadedEvent.class;
+    }
+
+    @Override
+    public CompletableFuture<Void> handle(VideoUploadedEvent payload) {
+        CompletableFuture<Void> jobs;
+        if (fusedEnabled) {
+            jobs = fusedTranscodingService.transcode(payload);
+        } else {
+            jobs = previewGeneratorService.generatePreview(payload);
+            if (renditionsEnabled) {
+                jobs = CompletableFuture.allOf(jobs, renditionTranscodingService.transcode(payload));
+            }
+        }
+        if (trickplayEnabled) {
+            jobs = CompletableFuture.allOf(jobs, trickplayGenerationService.generateTrickplay(payload));
+        }
+        return jobs;
+    }
+
+}
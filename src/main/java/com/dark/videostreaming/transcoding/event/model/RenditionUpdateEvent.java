@@ -0,0 +1,20 @@
+package com.dark.videostreaming.transcoding.event.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+@Data
+@Builder
+@Jacksonized
+public class RenditionUpdateEvent {
+    private long videoId;
+    private String rendition;
+    private String manifest;
+    private String dashManifest;
+    private double progress;
+    private String status;
+    private Instant createdAt;
+}
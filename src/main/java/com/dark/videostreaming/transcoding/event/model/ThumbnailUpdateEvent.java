@@ -4,9 +4,11 @@ import java.time.Instant;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 @Data
 @Builder
+@Jacksonized
 public class ThumbnailUpdateEvent {
     private long videoId;
     private String name;
@@ -0,0 +1,19 @@
+package com.dark.videostreaming.transcoding.event.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+@Data
+@Builder
+@Jacksonized
+public class TrickplayUpdateEvent {
+    private long videoId;
+    private String manifest;
+    private int sprites;
+    private double intervalSeconds;
+    private String status;
+    private Instant createdAt;
+}
@@ -0,0 +1,125 @@
+package com.dark.videostreaming.transcoding.event.producer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.event.Event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Publishes job status updates. Intermediate statuses are held back for a short window and replaced by any newer
+// status of the same video, so a job that finishes quickly only ever produces its final event. Terminal statuses
+// are sent right away.
+@Slf4j
+@Component
+public class StatusPublisher {
+
+    private final KafkaTemplate<String, Event<?>> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long coalesceWindowMillis;
+
+    private final Map<String, PendingStatus> pending = new ConcurrentHashMap<>();
+    // Per-key ordering of sends and held back statuses; keys share a lock by hash so the set stays bounded.
+    private final Object[] locks = new Object[64];
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("status-publisher").daemon(true).factory());
+
+    public StatusPublisher(KafkaTemplate<String, Event<?>> kafkaTemplate, MeterRegistry meterRegistry,
+            @Value("${transcoding.status.coalesce-window-ms:250}") long coalesceWindowMillis) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void publish(String topic, long videoId, String status, Event<?> event) {
+        String key = topic + "|" + event.getEventType() + "|" + videoId;
+        PendingStatus update = new PendingStatus(topic, String.valueOf(videoId), event);
+        if ("ready".equals(status) || "failed".equals(status) || coalesceWindowMillis <= 0) {
+            // NOTE: Dropping the held back status and sending this one happen under the key's lock, the same one
+            // flush() sends under, so a flush can't slip an older status in after the terminal one. The map itself
+            // is never locked across a send, which may block on producer metadata or a full buffer.
+            synchronized (lockFor(key)) {
+                if (pending.remove(key) != null) {
+                    coalesced(topic);
+                }
+                send(update);
+            }
+            return;
+        }
+        synchronized (lockFor(key)) {
+            if (pending.put(key, update) != null) {
+                coalesced(topic);
+                return;
+            }
+        }
+        flusher.schedule(() -> flush(key), coalesceWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(String key) {
+        synchronized (lockFor(key)) {
+            PendingStatus update = pending.remove(key);
+            if (update != null) {
+                send(update);
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    // A status that can't be sent is logged and counted, never thrown at the job: its artifact is already stored.
+    private void send(PendingStatus update) {
+        long start = System.nanoTime();
+        try {
+            kafkaTemplate.send(update.topic(), update.key(), update.event()).whenComplete((result, e) -> {
+                Timer.builder("transcoding.status.publish")
+                        .description("Time from handing a status to the producer until the broker acknowledged it")
+                        .tags("topic", update.topic(), "outcome", e == null ? "success" : "failure")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (e != null) {
+                    failed(update, e);
+                } else {
+                    meterRegistry.counter("transcoding.status.sent", "topic", update.topic()).increment();
+                }
+            });
+        } catch (RuntimeException e) {
+            failed(update, e);
+        }
+    }
+
+    private void failed(PendingStatus update, Throwable e) {
+        log.error("Failed to publish {} for video {} to {}", update.event().getEventType(), update.key(),
+                update.topic(), e);
+        meterRegistry.counter("transcoding.status.failed", "topic", update.topic()).increment();
+    }
+
+    private void coalesced(String topic) {
+        meterRegistry.counter("transcoding.status.coalesced", "topic", topic).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        pending.keySet().forEach(this::flush);
+        kafkaTemplate.flush();
+    }
+
+    private record PendingStatus(String topic, String key, Event<?> event) {
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+public final class ChunkCommandPlanner {
+
+    public static final String CHUNK_PATTERN = "chunk_%05d.mkv";
+
+    private ChunkCommandPlanner() {
+    }
+
+    // Cuts the video stream at the first keyframe after every chunk boundary, without decoding anything.
+    public static List<String> splitCommand(MediaSource source, int chunkSeconds, String outputDir) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of(
+                "-map", "0:v:0",
+                "-c", "copy",
+                "-f", "segment",
+                "-segment_time", String.valueOf(chunkSeconds),
+                "-reset_timestamps", "1",
+                outputDir + "/" + CHUNK_PATTERN));
+        return command;
+    }
+
+    public static List<String> encodeChunkCommand(Path chunk, Rendition rendition, MediaInfo info,
+            int segmentSeconds, int threads, Path output) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-i", chunk.toString(), "-map", "0:v:0"));
+        command.addAll(RenditionCommandPlanner.videoEncodeArgs(rendition, info, segmentSeconds, threads));
+        command.add(output.toString());
+        return command;
+    }
+
+    public static String concatList(List<Path> chunks) {
+        StringBuilder list = new StringBuilder("ffconcat version 1.0\n");
+        for (Path chunk : chunks) {
+            list.append("file '").append(chunk.toAbsolutePath().toString().replace("'", "'\\''")).append("'\n");
+        }
+        return list.toString();
+    }
+
+    // Stitches the encoded chunks back together losslessly and muxes in the audio, which is cheap enough to
+    // encode in one go, straight into HLS.
+    public static List<String> stitchCommand(String concatList, MediaSource source, Rendition rendition,
+            int segmentSeconds, String outputDir) {
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg",
+                "-f", "concat",
+                "-safe", "0",
+                "-i", concatList));
+        boolean hasAudio = source.info().hasAudio();
+        if (hasAudio) {
+            command.addAll(source.inputArgs());
+        }
+        command.addAll(List.of("-map", "0:v:0", "-c:v", "copy"));
+        if (hasAudio) {
+            command.addAll(List.of("-map", "1:a:0"));
+            command.addAll(RenditionCommandPlanner.audioEncodeArgs(rendition));
+        }
+        command.addAll(RenditionCommandPlanner.hlsOutputArgs(rendition, segmentSeconds, outputDir));
+        return command;
+    }
+
+    public static List<String> countFramesCommand(String location) {
+        return List.of(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-count_packets",
+                "-show_entries", "stream=nb_read_packets:format=duration",
+                "-of", "default=noprint_wrappers=1",
+                location);
+    }
+
+}
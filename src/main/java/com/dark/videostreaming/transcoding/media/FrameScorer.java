@@ -0,0 +1,124 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public final class FrameScorer {
+
+    // 32 bins of 8 luma levels each: coarse enough that noise and small motion don't register as a new scene.
+    public static final int HISTOGRAM_SHIFT = 3;
+    public static final int HISTOGRAM_BINS = 256 >> HISTOGRAM_SHIFT;
+
+    // Frames darker, brighter or flatter than this are fades, black frames or title cards, never a poster.
+    private static final double MIN_BRIGHTNESS = 24;
+    private static final double MAX_BRIGHTNESS = 232;
+    private static final double MIN_CONTRAST = 12;
+    private static final double TARGET_BRIGHTNESS = 118;
+
+    private static final double SHARPNESS_WEIGHT = 0.4;
+    private static final double CONTRAST_WEIGHT = 0.2;
+    private static final double EXPOSURE_WEIGHT = 0.2;
+    private static final double STABILITY_WEIGHT = 0.2;
+
+    private FrameScorer() {
+    }
+
+    // Statistics of one 8-bit luma plane: the variance of its Laplacian (high for sharp edges, low for blur and
+    // motion smear), its mean, its standard deviation and a coarse histogram for comparing it with its neighbours.
+    public static Score score(ByteBuffer frame, int width, int height) {
+        int[] histogram = new int[HISTOGRAM_BINS];
+        long sum = 0;
+        long squares = 0;
+        long laplacianSum = 0;
+        long laplacianSquares = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = frame.get(row + x) & 0xFF;
+                sum += pixel;
+                squares += pixel * pixel;
+                histogram[pixel >> HISTOGRAM_SHIFT]++;
+            }
+            if (y == 0 || y == height - 1) {
+                continue;
+            }
+            for (int x = 1; x < width - 1; x++) {
+                int i = row + x;
+                int laplacian = 4 * (frame.get(i) & 0xFF)
+                        - (frame.get(i - 1) & 0xFF) - (frame.get(i + 1) & 0xFF)
+                        - (frame.get(i - width) & 0xFF) - (frame.get(i + width) & 0xFF);
+                laplacianSum += laplacian;
+                laplacianSquares += laplacian * laplacian;
+            }
+        }
+        int pixels = width * height;
+        int interior = Math.max(1, (width - 2) * (height - 2));
+        double mean = (double) sum / pixels;
+        double laplacianMean = (double) laplacianSum / interior;
+        return new Score(
+                (double) laplacianSquares / interior - laplacianMean * laplacianMean,
+                mean,
+                Math.sqrt(Math.max(0, (double) squares / pixels - mean * mean)),
+                histogram);
+    }
+
+    // Half the L1 distance of the normalized histograms: 0 for the same picture, 1 for nothing in common.
+    public static double sceneChange(Score a, Score b) {
+        double totalA = 0;
+        double totalB = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            totalA += a.histogram()[i];
+            totalB += b.histogram()[i];
+        }
+        double distance = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            distance += Math.abs(a.histogram()[i] / totalA - b.histogram()[i] / totalB);
+        }
+        return distance / 2;
+    }
+
+    // Index of the best poster among frames sampled in order, or -1 when every one of them was rejected.
+    // Sharpness and contrast count relative to the best of the source, so dark or soft sources still get a pick;
+    // stability prefers frames far from a scene change, whose neighbours show the same shot.
+    public static int best(List<Score> frames) {
+        double maxSharpness = 0;
+        double maxContrast = 0;
+        for (Score frame : frames) {
+            maxSharpness = Math.max(maxSharpness, frame.sharpness());
+            maxContrast = Math.max(maxContrast, frame.contrast());
+        }
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < frames.size(); i++) {
+            Score frame = frames.get(i);
+            if (frame.brightness() < MIN_BRIGHTNESS || frame.brightness() > MAX_BRIGHTNESS
+                    || frame.contrast() < MIN_CONTRAST) {
+                continue;
+            }
+            double change = 0;
+            if (i > 0) {
+                change = sceneChange(frame, frames.get(i - 1));
+            }
+            if (i < frames.size() - 1) {
+                change = Math.max(change, sceneChange(frame, frames.get(i + 1)));
+            }
+            double score = SHARPNESS_WEIGHT * (maxSharpness > 0 ? frame.sharpness() / maxSharpness : 0)
+                    + CONTRAST_WEIGHT * frame.contrast() / maxContrast
+                    + EXPOSURE_WEIGHT * (1 - Math.abs(frame.brightness() - TARGET_BRIGHTNESS) / TARGET_BRIGHTNESS)
+                    + STABILITY_WEIGHT * (1 - change);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public record Score(
+            double sharpness,
+            double brightness,
+            double contrast,
+            int[] histogram) {
+    }
+
+}
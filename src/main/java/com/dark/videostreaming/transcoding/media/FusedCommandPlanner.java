@@ -0,0 +1,109 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+public final class FusedCommandPlanner {
+
+    public static final int THUMBNAIL_SCAN_LENGTH = 5;
+
+    // Dedup profiles of the fused outputs. The fused preview is always re-encoded and trimmed from the decoded
+    // stream rather than seeked, so it never shares a key with the preview of the separate pipeline.
+    public static final String PREVIEW_PROFILE = PreviewCommandPlanner.PROFILE + ":fused-v1";
+    public static final String THUMBNAIL_PROFILE = "thumbnail-v1:" + THUMBNAIL_SCAN_LENGTH + ":1/3:thumbnail:png"
+            + ":fused-v1";
+
+    private FusedCommandPlanner() {
+    }
+
+    // NOTE: The source is decoded once and split into one branch per output. The preview branch splits again
+    // into its clips, trims them out of the stream and concats them; the thumbnail branch runs the thumbnail
+    // filter over a window at a third of the duration; every rendition branch only scales. Branches that are
+    // done early just stop, the rest keep reading from the split. previewOutput or thumbnailOutput may be null
+    // and renditions empty when that artifact is not needed.
+    public static List<String> fusedCommand(MediaSource source, String previewOutput, String thumbnailOutput,
+            List<Rendition> renditions, int segmentSeconds, int threads, String hlsDir) {
+        MediaInfo info = source.info();
+        List<String> branches = new ArrayList<>();
+        StringBuilder graph = new StringBuilder();
+        if (previewOutput != null) {
+            List<Double> starts = PreviewCommandPlanner.clipStarts(info.duration());
+            StringBuilder clips = new StringBuilder();
+            StringBuilder labels = new StringBuilder();
+            for (int i = 0; i < starts.size(); i++) {
+                clips.append("[pc").append(i).append(']');
+                graph.append("[pc").append(i).append("]trim=start=")
+                        .append(PreviewCommandPlanner.format(starts.get(i)))
+                        .append(":duration=").append(PreviewCommandPlanner.CLIP_LENGTH)
+                        .append(",setpts=PTS-STARTPTS[p").append(i).append("];");
+                labels.append("[p").append(i).append(']');
+            }
+            graph.append("[preview]split=").append(starts.size()).append(clips).append(';')
+                    .append(labels).append("concat=n=").append(starts.size()).append(":v=1:a=0[previewout];");
+            branches.add("preview");
+        }
+        if (thumbnailOutput != null) {
+            graph.append("[thumbnail]trim=start=").append(PreviewCommandPlanner.format(info.duration() / 3))
+                    .append(":duration=").append(THUMBNAIL_SCAN_LENGTH)
+                    .append(",thumbnail[thumbnailout];");
+            branches.add("thumbnail");
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            graph.append("[r").append(i).append(']')
+                    .append(RenditionCommandPlanner.scaleFilter(renditions.get(i), info))
+                    .append("[r").append(i).append("out];");
+            branches.add("r" + i);
+        }
+        // NOTE: Trims don't emit anything between their windows, so without a rendition branch out_time would stand
+        // still while the gaps are decoded and the stall timeout could kill a healthy job. A null output that sees
+        // every decoded frame keeps the progress moving.
+        boolean progressOutput = renditions.isEmpty();
+        if (progressOutput) {
+            branches.add("progress");
+        }
+        StringBuilder split = new StringBuilder("[0:v:0]split=").append(branches.size());
+        for (String branch : branches) {
+            split.append('[').append(branch).append(']');
+        }
+        graph.insert(0, split.append(';'));
+        graph.setLength(graph.length() - 1);
+
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of("-filter_complex", graph.toString()));
+        if (previewOutput != null) {
+            command.addAll(List.of(
+                    "-map", "[previewout]",
+                    "-c:v", "libx264",
+                    "-preset", "ultrafast",
+                    "-an",
+                    previewOutput));
+        }
+        if (thumbnailOutput != null) {
+            command.addAll(List.of(
+                    "-map", "[thumbnailout]",
+                    "-frames:v", "1",
+                    "-an",
+                    thumbnailOutput));
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            Rendition rendition = renditions.get(i);
+            command.addAll(List.of("-map", "[r" + i + "out]"));
+            command.addAll(RenditionCommandPlanner.videoCodecArgs(rendition, segmentSeconds, threads));
+            if (info.hasAudio()) {
+                command.addAll(List.of("-map", "0:a:0"));
+                command.addAll(RenditionCommandPlanner.audioEncodeArgs(rendition));
+            }
+            command.addAll(RenditionCommandPlanner.hlsOutputArgs(rendition, segmentSeconds, hlsDir));
+        }
+        if (progressOutput) {
+            command.addAll(List.of("-map", "[progress]", "-an", "-f", "null", "-"));
+        }
+        return command;
+    }
+
+}
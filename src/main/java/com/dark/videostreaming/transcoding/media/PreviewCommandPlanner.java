@@ -0,0 +1,143 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+public final class PreviewCommandPlanner {
+
+    public static final int CLIP_LENGTH = 5;
+    public static final String PIPE_OUTPUT = "pipe:1";
+
+    private static final double[] CLIP_POSITIONS = { 0.25, 0.5, 0.75 };
+
+    // Codecs that can go into the preview MP4 as-is, without touching a single frame.
+    private static final Set<String> COPYABLE_CODECS = Set.of("h264", "hevc");
+
+    // Part of every preview's dedup key; bump it whenever the commands below produce a different preview.
+    public static final String PROFILE = "preview-v1:" + CLIP_LENGTH + ":" + Arrays.toString(CLIP_POSITIONS)
+            + ":" + COPYABLE_CODECS.stream().sorted().toList() + ":libx264-ultrafast";
+
+    private PreviewCommandPlanner() {
+    }
+
+    public static List<Double> clipStarts(double duration) {
+        List<Double> starts = new ArrayList<>(CLIP_POSITIONS.length);
+        for (double position : CLIP_POSITIONS) {
+            starts.add(duration * position);
+        }
+        return starts;
+    }
+
+    public static boolean canStreamCopy(String codec) {
+        return codec != null && COPYABLE_CODECS.contains(codec);
+    }
+
+    public static List<String> keyframeProbeCommand(MediaSource source, List<Double> starts) {
+        List<String> intervals = new ArrayList<>(starts.size());
+        for (double start : starts) {
+            // Looks a little past the clip so a keyframe just after the requested start is still found.
+            intervals.add(format(start) + "%+" + (CLIP_LENGTH + 3));
+        }
+        return List.of(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags",
+                "-read_intervals", String.join(",", intervals),
+                "-of", "csv=p=0",
+                source.location());
+    }
+
+    // Snaps every start to a keyframe so a stream copy never begins on a frame that can't be decoded.
+    // Returns null when some window has no keyframe at all, in which case the preview has to be re-encoded.
+    public static List<Double> alignToKeyframes(List<Double> starts, List<Double> keyframes) {
+        List<Double> aligned = new ArrayList<>(starts.size());
+        for (double start : starts) {
+            Double after = null;
+            Double before = null;
+            for (double keyframe : keyframes) {
+                if (keyframe >= start && keyframe < start + CLIP_LENGTH && (after == null || keyframe < after)) {
+                    after = keyframe;
+                } else if (keyframe < start && keyframe > start - CLIP_LENGTH
+                        && (before == null || keyframe > before)) {
+                    before = keyframe;
+                }
+            }
+            Double chosen = after != null ? after : before;
+            if (chosen == null) {
+                return null;
+            }
+            aligned.add(chosen);
+        }
+        return aligned;
+    }
+
+    public static String concatList(MediaSource source, List<Double> inpoints) {
+        StringBuilder list = new StringBuilder("ffconcat version 1.0\n");
+        for (double inpoint : inpoints) {
+            list.append("file '").append(source.location().replace("'", "'\\''")).append("'\n")
+                    .append("inpoint ").append(format(inpoint)).append('\n')
+                    .append("outpoint ").append(format(inpoint + CLIP_LENGTH)).append('\n');
+        }
+        return list.toString();
+    }
+
+    public static List<String> streamCopyCommand(String concatList, String codec, String output) {
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg",
+                "-f", "concat",
+                "-safe", "0",
+                "-protocol_whitelist", "file,http,https,tcp,tls,crypto",
+                "-i", concatList,
+                "-map", "0:v:0",
+                "-c", "copy",
+                "-an"));
+        if ("hevc".equals(codec)) {
+            command.addAll(List.of("-tag:v", "hvc1"));
+        }
+        addOutput(command, output);
+        return command;
+    }
+
+    // One process for the whole preview: every clip is an input seeked on its own, so the decoder only sees the
+    // three windows, and the concat filter joins them before a single libx264 encode.
+    public static List<String> encodeCommand(MediaSource source, List<Double> starts, String output) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        StringBuilder graph = new StringBuilder();
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < starts.size(); i++) {
+            command.addAll(List.of("-ss", format(starts.get(i)), "-t", String.valueOf(CLIP_LENGTH)));
+            command.addAll(source.inputArgs());
+            graph.append('[').append(i).append(":v:0]trim=duration=").append(CLIP_LENGTH)
+                    .append(",setpts=PTS-STARTPTS[v").append(i).append("];");
+            labels.append("[v").append(i).append(']');
+        }
+        graph.append(labels).append("concat=n=").append(starts.size()).append(":v=1:a=0[preview]");
+        command.addAll(List.of(
+                "-filter_complex", graph.toString(),
+                "-map", "[preview]",
+                "-c:v", "libx264",
+                "-preset", "ultrafast",
+                "-an"));
+        addOutput(command, output);
+        return command;
+    }
+
+    private static void addOutput(List<String> command, String output) {
+        if (PIPE_OUTPUT.equals(output)) {
+            // A regular MP4 needs to seek back and patch the moov atom; a fragmented one can be written as a stream.
+            command.addAll(List.of("-f", "mp4", "-movflags", "frag_keyframe+empty_moov+default_base_moof"));
+        }
+        command.add(output);
+    }
+
+    public static String format(double seconds) {
+        return String.format(Locale.US, "%.3f", seconds);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+public final class RenditionCommandPlanner {
+
+    public static final String MASTER_PLAYLIST = "master.m3u8";
+    public static final String DASH_MANIFEST = "manifest.mpd";
+
+    private RenditionCommandPlanner() {
+    }
+
+    // Keeps every rendition that isn't an upscale of the source, but always at least the smallest one.
+    public static List<Rendition> selectLadder(List<Rendition> ladder, MediaInfo info) {
+        List<Rendition> selected = new ArrayList<>();
+        Rendition smallest = null;
+        for (Rendition rendition : ladder) {
+            if (info.height() <= 0 || rendition.height() <= info.height()) {
+                selected.add(rendition);
+            }
+            if (smallest == null || rendition.height() < smallest.height()) {
+                smallest = rendition;
+            }
+        }
+        if (selected.isEmpty() && smallest != null) {
+            selected.add(smallest);
+        }
+        return selected;
+    }
+
+    public static List<String> hlsCommand(MediaSource source, Rendition rendition, int segmentSeconds, int threads,
+            String outputDir) {
+        MediaInfo info = source.info();
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of("-map", "0:v:0"));
+        command.addAll(videoEncodeArgs(rendition, info, segmentSeconds, threads));
+        if (info.hasAudio()) {
+            command.addAll(List.of("-map", "0:a:0"));
+            command.addAll(audioEncodeArgs(rendition));
+        }
+        command.addAll(hlsOutputArgs(rendition, segmentSeconds, outputDir));
+        return command;
+    }
+
+    public static List<String> videoEncodeArgs(Rendition rendition, MediaInfo info, int segmentSeconds,
+            int threads) {
+        List<String> args = new ArrayList<>(List.of("-vf", scaleFilter(rendition, info)));
+        args.addAll(videoCodecArgs(rendition, segmentSeconds, threads));
+        return args;
+    }
+
+    public static String scaleFilter(Rendition rendition, MediaInfo info) {
+        return "scale=" + rendition.widthFor(info.width(), info.height()) + ":" + rendition.height();
+    }
+
+    public static List<String> videoCodecArgs(Rendition rendition, int segmentSeconds, int threads) {
+        int maxRate = rendition.videoBitrate() * 107 / 100;
+        return List.of(
+                "-c:v", "libx264",
+                "-preset", "veryfast",
+                "-profile:v", "high",
+                "-b:v", rendition.videoBitrate() + "k",
+                "-maxrate", maxRate + "k",
+                "-bufsize", rendition.videoBitrate() * 3 / 2 + "k",
+                // Same keyframe cadence in every rendition, so players can switch at any segment boundary.
+                "-force_key_frames", "expr:gte(t,n_forced*" + segmentSeconds + ")",
+                "-sc_threshold", "0",
+                "-threads", String.valueOf(threads));
+    }
+
+    public static List<String> audioEncodeArgs(Rendition rendition) {
+        return List.of(
+                "-c:a", "aac",
+                "-b:a", rendition.audioBitrate() + "k",
+                "-ac", "2");
+    }
+
+    public static List<String> hlsOutputArgs(Rendition rendition, int segmentSeconds, String outputDir) {
+        return List.of(
+                "-f", "hls",
+                "-hls_time", String.valueOf(segmentSeconds),
+                "-hls_playlist_type", "vod",
+                "-hls_flags", "temp_file",
+                "-hls_segment_filename", outputDir + "/" + rendition.name() + "_%05d.ts",
+                outputDir + "/" + rendition.name() + ".m3u8");
+    }
+
+    public static String masterPlaylist(List<Rendition> renditions, MediaInfo info) {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+        for (Rendition rendition : renditions) {
+            int audioBitrate = info.hasAudio() ? rendition.audioBitrate() : 0;
+            long bandwidth = (rendition.videoBitrate() * 107L / 100 + audioBitrate) * 1000;
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth)
+                    .append(",RESOLUTION=").append(rendition.widthFor(info.width(), info.height()))
+                    .append('x').append(rendition.height())
+                    .append('\n')
+                    .append(rendition.name()).append(".m3u8\n");
+        }
+        return playlist.toString();
+    }
+
+    // Repackages the finished HLS renditions into DASH without encoding anything again.
+    public static List<String> dashCommand(List<Rendition> renditions, boolean hasAudio, String hlsDir,
+            String outputDir) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        for (Rendition rendition : renditions) {
+            command.addAll(List.of("-i", hlsDir + "/" + rendition.name() + ".m3u8"));
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            command.addAll(List.of("-map", i + ":v:0"));
+        }
+        if (hasAudio) {
+            command.addAll(List.of("-map", "0:a:0"));
+        }
+        command.addAll(List.of(
+                "-c", "copy",
+                "-f", "dash",
+                "-use_template", "1",
+                "-use_timeline", "1",
+                outputDir + "/" + DASH_MANIFEST));
+        return command;
+    }
+
+}
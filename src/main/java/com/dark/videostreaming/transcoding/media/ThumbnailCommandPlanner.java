@@ -0,0 +1,59 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+public final class ThumbnailCommandPlanner {
+
+    public static final String PIPE_OUTPUT = "pipe:1";
+
+    private ThumbnailCommandPlanner() {
+    }
+
+    // Candidates for the poster as raw 8-bit luma planes of width x height, back to back on stdout: frame i shows
+    // start + i * interval. start_time pads with the first frame, so the index stays right when the first decoded
+    // frame comes after start.
+    public static List<String> sampleCommand(MediaSource source, double start, double length, double interval,
+            int width, int height, boolean keyframesOnly) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        if (keyframesOnly) {
+            command.addAll(List.of("-skip_frame", "nokey"));
+        }
+        command.addAll(List.of("-ss", format(start), "-t", format(length)));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of(
+                "-map", "0:v:0",
+                "-an", "-sn", "-dn",
+                "-vf", "fps=fps=1/" + format(interval) + ":start_time=0,scale=" + width + ":" + height
+                        + ",format=gray",
+                "-f", "rawvideo",
+                PIPE_OUTPUT));
+        return command;
+    }
+
+    // The chosen frame at full resolution. Sampled keyframes are matched by seeking to the keyframe before the
+    // timestamp instead of decoding up to it.
+    public static List<String> extractCommand(MediaSource source, double timestamp, boolean keyframesOnly,
+            String output) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        if (keyframesOnly) {
+            command.add("-noaccurate_seek");
+        }
+        command.addAll(List.of("-ss", format(timestamp)));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of(
+                "-map", "0:v:0",
+                "-frames:v", "1",
+                "-an",
+                output));
+        return command;
+    }
+
+    private static String format(double seconds) {
+        return String.format(Locale.US, "%.3f", seconds);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.dark.videostreaming.transcoding.media;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+public final class TrickplayCommandPlanner {
+
+    public static final String MANIFEST = "thumbnails.vtt";
+
+    private TrickplayCommandPlanner() {
+    }
+
+    // Keeps the source's aspect ratio; encoders want even dimensions.
+    public static int tileHeight(MediaInfo info, int tileWidth) {
+        if (info.width() <= 0 || info.height() <= 0) {
+            return evenDown(tileWidth * 9 / 16);
+        }
+        return evenDown((int) Math.round((double) tileWidth * info.height() / info.width()));
+    }
+
+    public static int frameCount(double duration, double interval) {
+        return Math.max(1, (int) Math.ceil(duration / interval));
+    }
+
+    public static String spriteName(int sheet, String format) {
+        return String.format(Locale.US, "sprite_%03d.%s", sheet, format);
+    }
+
+    // NOTE: One decode for the whole track: fps picks a frame every interval, scale shrinks it to a tile and tile
+    // packs columns x rows of them into each sheet, flushing a partly filled last sheet at the end of the input.
+    public static List<String> spriteCommand(MediaSource source, double interval, int tileWidth, int tileHeight,
+            int columns, int rows, String format, boolean keyframesOnly, String outputDir) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg"));
+        if (keyframesOnly) {
+            // The decoder skips everything but keyframes; tiles then show the nearest keyframe, not the exact time.
+            command.addAll(List.of("-skip_frame", "nokey"));
+        }
+        command.addAll(source.inputArgs());
+        command.addAll(List.of(
+                "-map", "0:v:0",
+                "-an", "-sn", "-dn",
+                "-vf", "fps=1/" + format(interval) + ",scale=" + tileWidth + ":" + tileHeight + ",tile="
+                        + columns + "x" + rows));
+        if ("webp".equals(format)) {
+            command.addAll(List.of("-c:v", "libwebp", "-quality", "75"));
+        } else {
+            command.addAll(List.of("-c:v", "mjpeg", "-q:v", "5"));
+        }
+        command.addAll(List.of(
+                "-f", "image2",
+                "-start_number", "0",
+                outputDir + "/sprite_%03d." + format));
+        return command;
+    }
+
+    // One cue per sampled frame, pointing at its tile through a media fragment on the sprite sheet.
+    public static String webVtt(int frames, double interval, double duration, int tileWidth, int tileHeight,
+            int columns, int rows, String format) {
+        int perSheet = columns * rows;
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        for (int i = 0; i < frames; i++) {
+            double start = i * interval;
+            double end = Math.min((i + 1) * interval, Math.max(duration, start + 0.001));
+            int tile = i % perSheet;
+            vtt.append('\n')
+                    .append(timestamp(start)).append(" --> ").append(timestamp(end)).append('\n')
+                    .append(spriteName(i / perSheet, format))
+                    .append("#xywh=").append(tile % columns * tileWidth).append(',')
+                    .append(tile / columns * tileHeight).append(',')
+                    .append(tileWidth).append(',').append(tileHeight).append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private static String timestamp(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format(Locale.US, "%02d:%02d:%02d.%03d", millis / 3_600_000, millis / 60_000 % 60,
+                millis / 1000 % 60, millis % 1000);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static int evenDown(int value) {
+        return Math.max(2, value & ~1);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.dark.videostreaming.transcoding.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Per-stage measurements of the transcoding pipelines. Every meter is tagged with the pipeline (preview,
+// thumbnail, rendition) and the stage (download, probe, encode, upload, ...) it belongs to.
+@Component
+public class PipelineMetrics {
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry, TranscodingScheduler transcodingScheduler) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("transcoding.jobs.in-flight", transcodingScheduler, TranscodingScheduler::inFlightJobs)
+                .description("Jobs currently running")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.jobs.queued", transcodingScheduler, TranscodingScheduler::queuedJobs)
+                .description("Jobs waiting for a job slot")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.encodes.queued", transcodingScheduler, TranscodingScheduler::queuedEncodes)
+                .description("Encodes waiting for an ffmpeg worker")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.encodes.slots", transcodingScheduler, TranscodingScheduler::encodeSlots)
+                .description("Size of the ffmpeg worker pool")
+                .register(meterRegistry);
+    }
+
+    public <T> T time(String pipeline, String stage, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = body.call();
+            timer(pipeline, stage, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Exception e) {
+            timer(pipeline, stage, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meterRegistry.counter("transcoding.stage.failures",
+                    "pipeline", pipeline, "stage", stage, "exception", e.getClass().getSimpleName()).increment();
+            throw e;
+        }
+    }
+
+    public void transferred(String pipeline, String stage, long bytes, long elapsedNanos) {
+        meterRegistry.counter("transcoding.stage.bytes", "pipeline", pipeline, "stage", stage).increment(bytes);
+        if (elapsedNanos > 0) {
+            DistributionSummary.builder("transcoding.stage.throughput")
+                    .description("Transfer rate of a stage")
+                    .baseUnit("MB/s")
+                    .tags("pipeline", pipeline, "stage", stage)
+                    .register(meterRegistry)
+                    .record(bytes / BYTES_PER_MB / (elapsedNanos / 1e9));
+        }
+    }
+
+    // 1.0 means the encoder kept up with playback speed, 4.0 that it was four times faster.
+    public void encoded(String pipeline, double mediaSeconds, long elapsedNanos) {
+        if (mediaSeconds > 0 && elapsedNanos > 0) {
+            DistributionSummary.builder("transcoding.encode.speed")
+                    .description("Seconds of media encoded per second of wall time")
+                    .tags("pipeline", pipeline)
+                    .register(meterRegistry)
+                    .record(mediaSeconds / (elapsedNanos / 1e9));
+        }
+    }
+
+    private Timer timer(String pipeline, String stage, String outcome) {
+        return Timer.builder("transcoding.stage.duration")
+                .description("Wall time of a pipeline stage")
+                .tags("pipeline", pipeline, "stage", stage, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.dark.videostreaming.transcoding.service;
+
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+
+public interface AdmissionController {
+
+    // Looks up the source's cached probe, if an earlier stage or attempt left one, for its real duration and
+    // container; otherwise the duration is guessed from the size.
+    JobCost estimate(String kind, MinioStorageService storage, String name, long inputBytes);
+
+    // Feeds a probed source back into the estimates of jobs still to come.
+    void observe(long bytes, MediaInfo info);
+
+}
@@ -0,0 +1,13 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface ArtifactCacheService {
+
+    // The version is the object's ETag, so an object overwritten under the same name is a miss, not a stale hit.
+    Optional<Path> get(String bucket, String name, String version, Path target);
+
+    void put(String bucket, String name, String version, Path file);
+
+}
@@ -0,0 +1,22 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
+
+public interface ArtifactDedupService {
+
+    // Identifies an artifact by the source's content and the encode profile that derives it, not by its name.
+    String contentKey(ObjectInfo source, String profile);
+
+    Optional<StoredArtifact> find(MinioStorageService storage, String contentKey, String name);
+
+    // User metadata to store the artifact with, so other nodes can tell what it was derived from.
+    Map<String, String> metadata(String contentKey);
+
+    void record(String contentKey, StoredArtifact artifact);
+
+}
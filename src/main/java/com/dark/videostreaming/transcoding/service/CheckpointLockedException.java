@@ -0,0 +1,20 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+
+import lombok.Getter;
+
+// Another attempt of the same job holds its checkpoint, usually a redelivery of a record whose job still runs.
+// Jobs treat it as a duplicate and stop quietly: the attempt holding the checkpoint publishes the outcome, so this
+// one neither reports a failure nor goes to the dead-letter topic.
+@Getter
+public class CheckpointLockedException extends IOException {
+
+    private final String jobKey;
+
+    public CheckpointLockedException(String jobKey) {
+        super("Checkpoint " + jobKey + " is held by another attempt of the job");
+        this.jobKey = jobKey;
+    }
+
+}
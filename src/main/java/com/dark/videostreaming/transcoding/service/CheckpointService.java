@@ -0,0 +1,11 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+
+public interface CheckpointService {
+
+    // Loads the checkpoint of an earlier attempt of the job, unless the source has changed since. Throws
+    // CheckpointLockedException while another attempt of the job holds it.
+    JobCheckpoint open(String jobKey, String sourceVersion) throws IOException;
+
+}
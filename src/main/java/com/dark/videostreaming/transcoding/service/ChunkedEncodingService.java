@@ -0,0 +1,18 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+public interface ChunkedEncodingService {
+
+    boolean shouldChunk(MediaInfo info);
+
+    void encodeHls(MediaSource source, List<Rendition> renditions, int segmentSeconds, Path workDir, Path hlsDir,
+            Consumer<Rendition> onRenditionDone) throws Exception;
+
+}
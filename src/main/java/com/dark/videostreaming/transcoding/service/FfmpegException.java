@@ -0,0 +1,20 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class FfmpegException extends IOException {
+
+    private final int exitCode;
+    private final List<String> stderrTail;
+
+    public FfmpegException(String message, int exitCode, List<String> stderrTail) {
+        super(stderrTail.isEmpty() ? message : message + ":\n" + String.join("\n", stderrTail));
+        this.exitCode = exitCode;
+        this.stderrTail = stderrTail;
+    }
+
+}
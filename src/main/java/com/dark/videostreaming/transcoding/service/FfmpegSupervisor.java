@@ -0,0 +1,30 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.dark.videostreaming.transcoding.service.model.FfmpegProgress;
+
+// Runs ffmpeg and ffprobe under a wall-clock timeout (and, for ffmpeg, a stall timeout on its -progress output),
+// with capped threads and lowered priority. Any failure, timeout or cancellation kills the whole process tree and
+// surfaces as an FfmpegException carrying the last lines of stderr.
+public interface FfmpegSupervisor {
+
+    void run(String name, List<String> command, Consumer<FfmpegProgress> onProgress)
+            throws IOException, InterruptedException;
+
+    String capture(String name, List<String> command) throws IOException, InterruptedException;
+
+    // The reader consumes stdout while the process runs; its result is only returned if the process succeeds.
+    <T> T readStdout(String name, List<String> command, StdoutReader<T> reader) throws Exception;
+
+    @FunctionalInterface
+    interface StdoutReader<T> {
+
+        T read(InputStream stdout) throws Exception;
+
+    }
+
+}
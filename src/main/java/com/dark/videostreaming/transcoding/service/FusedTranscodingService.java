@@ -0,0 +1,9 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+
+public interface FusedTranscodingService {
+    CompletableFuture<Void> transcode(VideoUploadedEvent event);
+}
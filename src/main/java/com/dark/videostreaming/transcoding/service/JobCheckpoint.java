@@ -0,0 +1,120 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+import com.dark.videostreaming.transcoding.service.model.RetryPolicy;
+
+import org.apache.commons.io.FileUtils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+// Durable progress of one job. Completed stages and their small results are kept in a properties file next to
+// the stage outputs, so a job redelivered after its node crashed picks up after the last stage that finished
+// instead of starting over.
+@Slf4j
+public class JobCheckpoint implements AutoCloseable {
+
+    public static final String STATE_FILE = "checkpoint.properties";
+    public static final String LOCK_FILE = ".lock";
+
+    @Getter
+    private final Path dir;
+    // Holds the exclusive lock on the checkpoint until it is closed.
+    private final FileChannel lock;
+    private final Properties state;
+    private final RetryPolicy retryPolicy;
+    private final Consumer<String> onRetry;
+
+    public JobCheckpoint(Path dir, FileChannel lock, Properties state, RetryPolicy retryPolicy,
+            Consumer<String> onRetry) {
+        this.dir = dir;
+        this.lock = lock;
+        this.state = state;
+        this.retryPolicy = retryPolicy;
+        this.onRetry = onRetry;
+    }
+
+    public boolean isDone(String stage) {
+        return state.containsKey("stage." + stage);
+    }
+
+    public String get(String key) {
+        return state.getProperty("value." + key);
+    }
+
+    public void put(String key, String value) throws IOException {
+        state.setProperty("value." + key, value);
+        persist();
+    }
+
+    // Runs the stage unless an earlier attempt of the job already completed it, and records it once it has.
+    public void stage(String stage, StageBody body) throws Exception {
+        if (isDone(stage)) {
+            log.info("Stage {} of {} already done, skipping it", stage, dir.getFileName());
+            return;
+        }
+        attempt(stage, () -> {
+            body.run();
+            return null;
+        });
+        state.setProperty("stage." + stage, Instant.now().toString());
+        persist();
+    }
+
+    // Retries with exponential backoff, without recording anything; for steps that are cheap to redo.
+    public <T> T attempt(String stage, Callable<T> body) throws Exception {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return body.call();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= retryPolicy.maxAttempts()) {
+                    throw e;
+                }
+                onRetry.accept(stage);
+                log.warn("Stage {} of {} failed (attempt {} of {}), retrying", stage, dir.getFileName(), attempt,
+                        retryPolicy.maxAttempts(), e);
+                Thread.sleep(retryPolicy.backoff(attempt).toMillis());
+            }
+        }
+    }
+
+    // NOTE: Only a crash leaves the checkpoint behind. A job that gets here either published its artifacts or
+    // failed, and a failed job's record goes to the dead-letter topic, whose replays start from scratch. The
+    // lock goes last, so the next attempt never sees a half-deleted checkpoint.
+    @Override
+    public void close() {
+        FileUtils.deleteQuietly(dir.toFile());
+        try {
+            lock.close();
+        } catch (IOException e) {
+            log.warn("Failed to release the lock of checkpoint {}", dir.getFileName(), e);
+        }
+    }
+
+    private synchronized void persist() throws IOException {
+        Path temp = dir.resolve(STATE_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, null);
+        }
+        Files.move(temp, dir.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    public interface StageBody {
+        void run() throws Exception;
+    }
+
+}
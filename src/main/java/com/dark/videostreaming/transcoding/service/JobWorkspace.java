@@ -0,0 +1,35 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@RequiredArgsConstructor
+public class JobWorkspace implements AutoCloseable {
+
+    @Getter
+    private final Path dir;
+    // Gives the workspace's reservation back to the manager that handed it out.
+    private final Runnable onClose;
+
+    public Path resolve(String name) {
+        return dir.resolve(name);
+    }
+
+    @Override
+    public void close() {
+        try {
+            FileUtils.deleteDirectory(dir.toFile());
+        } catch (IOException e) {
+            log.warn("Failed to completely delete workspace {}, but ignoring.", dir, e);
+        }
+        onClose.run();
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+public interface MediaProbeService {
+
+    MediaInfo probe(ObjectInfo object, String location) throws Exception;
+
+    MediaInfo probe(String location) throws Exception;
+
+    // What an earlier probe of this version of the object found, without running ffprobe.
+    Optional<MediaInfo> cached(ObjectInfo object);
+
+}
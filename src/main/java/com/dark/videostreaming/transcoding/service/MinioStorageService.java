@@ -1,13 +1,42 @@
 package com.dark.videostreaming.transcoding.service;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
 
 public interface MinioStorageService {
     
-    void save(InputStream file, String name, long size) throws Exception;
+    default void save(InputStream file, String name, long size) throws Exception {
+        save(file, name, size, Map.of());
+    }
+
+    void save(InputStream file, String name, long size, Map<String, String> userMetadata) throws Exception;
+
+    default long save(InputStream file, String name) throws Exception {
+        return save(file, name, Map.of());
+    }
+
+    // Uploads a stream of unknown length part by part and returns the number of bytes stored.
+    long save(InputStream file, String name, Map<String, String> userMetadata) throws Exception;
+
+    default void save(Path file, String name) throws Exception {
+        save(file, name, Map.of());
+    }
+
+    // Stores a finished local file; backends on the same filesystem link it instead of copying the bytes.
+    void save(Path file, String name, Map<String, String> userMetadata) throws Exception;
     
     void delete(String name) throws Exception;
     
     InputStream getInputStream(String name, long offset, long length) throws Exception;
+
+    // Writes the whole object to target, which must not exist yet.
+    void download(String name, Path target) throws Exception;
+
+    String getPresignedUrl(String name, int expirySeconds) throws Exception;
+
+    ObjectInfo stat(String name) throws Exception;
     
 }
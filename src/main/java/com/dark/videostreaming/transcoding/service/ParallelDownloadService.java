@@ -0,0 +1,10 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.nio.file.Path;
+
+public interface ParallelDownloadService {
+
+    // Fetches the object as concurrent byte ranges straight into target, which must not exist yet.
+    void download(MinioStorageService storage, String name, long size, Path target) throws Exception;
+
+}
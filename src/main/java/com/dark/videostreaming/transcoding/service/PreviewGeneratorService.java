@@ -1,9 +1,11 @@
 package com.dark.videostreaming.transcoding.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
 
 public interface PreviewGeneratorService {
 
-    void generatePreview(VideoUploadedEvent event);
+    CompletableFuture<Void> generatePreview(VideoUploadedEvent event);
 
 }
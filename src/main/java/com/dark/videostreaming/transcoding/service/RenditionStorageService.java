@@ -0,0 +1,4 @@
+package com.dark.videostreaming.transcoding.service;
+
+public interface RenditionStorageService extends MinioStorageService {
+}
@@ -0,0 +1,12 @@
+package com.dark.videostreaming.transcoding.service;
+
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+public interface SourceInputService {
+
+    // The pipeline only tags the download and probe metrics.
+    MediaSource open(String pipeline, MinioStorageService storage, ObjectInfo object, JobWorkspace workspace)
+            throws Exception;
+
+}
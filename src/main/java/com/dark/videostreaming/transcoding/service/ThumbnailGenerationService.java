@@ -1,7 +1,9 @@
 package com.dark.videostreaming.transcoding.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
 
 public interface ThumbnailGenerationService {
-    void generateThumbnail(PreviewUpdateEvent event);
+    CompletableFuture<Void> generateThumbnail(PreviewUpdateEvent event);
 }
@@ -0,0 +1,23 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.nio.file.Path;
+import java.util.OptionalDouble;
+
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+public interface ThumbnailSelectionService {
+
+    boolean isEnabled();
+
+    // Part of the thumbnail's dedup key: the sampling settings decide which frame wins.
+    String profile();
+
+    // Media seconds a selection samples from a source this long.
+    double sampledSeconds(double duration);
+
+    // Timestamp of the best scoring candidate, empty when no candidate is usable as a poster.
+    OptionalDouble select(String name, MediaSource source) throws Exception;
+
+    void extract(String name, MediaSource source, double timestamp, Path output) throws Exception;
+
+}
@@ -0,0 +1,27 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+
+public interface TranscodingScheduler {
+
+    CompletableFuture<Void> submit(String jobName, JobCost cost, Runnable job);
+
+    boolean hasCapacity();
+
+    <T> T runEncode(Callable<T> task) throws Exception;
+
+    JobWorkspace openWorkspace(String prefix) throws IOException;
+
+    int encodeSlots();
+
+    int inFlightJobs();
+
+    int queuedJobs();
+
+    int queuedEncodes();
+
+}
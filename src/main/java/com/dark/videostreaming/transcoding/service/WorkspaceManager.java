@@ -0,0 +1,19 @@
+package com.dark.videostreaming.transcoding.service;
+
+import java.io.IOException;
+
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+
+public interface WorkspaceManager {
+
+    JobWorkspace open(String prefix, JobCost cost) throws IOException;
+
+    // Node-wide limit for the disk-backed workspaces, the disk budget of admission.
+    long diskQuota();
+
+    // Bytes the disk-backed workspaces actually hold, as of the last measurement.
+    long usedBytes();
+
+    void sweep();
+
+}
@@ -0,0 +1,202 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+// One bucket as a directory under storage.local.root, for single-node deployments and tests. Objects are written
+// to a temporary file and renamed into place, so readers never see a partial object; user metadata lives in a
+// properties file next to it under .metadata/.
+abstract class AbstractLocalStorageService implements MinioStorageService {
+
+    private static final long TRANSFER_CHUNK = 64L * 1024 * 1024;
+
+    private final String bucket;
+    private final Path bucketDir;
+    private final Path metadataDir;
+
+    AbstractLocalStorageService(Path root, String bucket) throws IOException {
+        this.bucket = bucket;
+        this.bucketDir = root.resolve(bucket).toAbsolutePath().normalize();
+        this.metadataDir = bucketDir.resolve(".metadata");
+        Files.createDirectories(metadataDir);
+    }
+
+    @Override
+    public void save(InputStream file, String name, long size, Map<String, String> userMetadata) throws Exception {
+        store(name, userMetadata, target -> {
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long written = transferFrom(file, out, size);
+                if (written != size) {
+                    throw new IOException("Stream for " + name + " ended after " + written + " of " + size + " bytes");
+                }
+            }
+        });
+    }
+
+    @Override
+    public long save(InputStream file, String name, Map<String, String> userMetadata) throws Exception {
+        long[] size = new long[1];
+        store(name, userMetadata, target -> {
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                size[0] = transferFrom(file, out, Long.MAX_VALUE);
+            }
+        });
+        return size[0];
+    }
+
+    @Override
+    public void save(Path file, String name, Map<String, String> userMetadata) throws Exception {
+        store(name, userMetadata, target -> link(file, target));
+    }
+
+    @Override
+    public void delete(String name) throws Exception {
+        Files.deleteIfExists(resolve(name));
+        Files.deleteIfExists(metadataFile(name));
+    }
+
+    @Override
+    public InputStream getInputStream(String name, long offset, long length) throws Exception {
+        FileChannel channel = FileChannel.open(resolve(name), StandardOpenOption.READ);
+        long end = length < 0 ? channel.size() : Math.min(channel.size(), offset + length);
+        return new PositionalInputStream(channel, offset, end);
+    }
+
+    @Override
+    public void download(String name, Path target) throws Exception {
+        link(resolve(name), target);
+    }
+
+    // NOTE: ffmpeg reads local paths directly, so there is nothing to sign and nothing that expires.
+    @Override
+    public String getPresignedUrl(String name, int expirySeconds) throws Exception {
+        return resolve(name).toString();
+    }
+
+    @Override
+    public ObjectInfo stat(String name) throws Exception {
+        BasicFileAttributes attributes = Files.readAttributes(resolve(name), BasicFileAttributes.class);
+        // Not a content hash, but it changes whenever the object is replaced, which is all the caches rely on.
+        String etag = Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                + Integer.toHexString(String.valueOf(attributes.fileKey()).hashCode());
+        return new ObjectInfo(bucket, name, attributes.size(), etag, readMetadata(name));
+    }
+
+    private void store(String name, Map<String, String> userMetadata, ObjectWriter writer) throws IOException {
+        Path target = resolve(name);
+        Path temp = bucketDir.resolve(".tmp-" + UUID.randomUUID());
+        try {
+            writer.write(temp);
+            Files.createDirectories(target.getParent());
+            writeMetadata(name, userMetadata);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long transferFrom(InputStream in, FileChannel out, long size) throws IOException {
+        // A FileInputStream exposes its channel, which lets the kernel copy the bytes without them ever
+        // reaching the heap.
+        ReadableByteChannel source = in instanceof FileInputStream fileInput
+                ? fileInput.getChannel()
+                : Channels.newChannel(in);
+        long position = 0;
+        while (position < size) {
+            long transferred = out.transferFrom(source, position, Math.min(TRANSFER_CHUNK, size - position));
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+        return position;
+    }
+
+    // A hard link shares the bytes with the source file; across filesystems it falls back to a kernel copy.
+    private static void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            // Different filesystem, or one without hard links.
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private Map<String, String> readMetadata(String name) throws IOException {
+        Path file = metadataFile(name);
+        Map<String, String> metadata = new HashMap<>();
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            properties.stringPropertyNames().forEach(key -> metadata.put(key, properties.getProperty(key)));
+        }
+        return metadata;
+    }
+
+    private void writeMetadata(String name, Map<String, String> userMetadata) throws IOException {
+        Path file = metadataFile(name);
+        if (userMetadata.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Properties properties = new Properties();
+        properties.putAll(userMetadata);
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, null);
+        }
+    }
+
+    private Path metadataFile(String name) {
+        return metadataDir.resolve(name + ".properties");
+    }
+
+    private Path resolve(String name) {
+        Path path = bucketDir.resolve(name).normalize();
+        if (!path.startsWith(bucketDir) || path.startsWith(metadataDir)) {
+            throw new IllegalArgumentException("Invalid object name '" + name + "'");
+        }
+        return path;
+    }
+
+    @FunctionalInterface
+    private interface ObjectWriter {
+
+        void write(Path target) throws IOException;
+
+    }
+
+}
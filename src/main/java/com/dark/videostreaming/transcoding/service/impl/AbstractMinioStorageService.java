@@ -0,0 +1,134 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.dark.videostreaming.transcoding.config.MinioBuckets;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.ParallelDownloadService;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.UploadObjectArgs;
+import io.minio.http.Method;
+
+// One bucket on the MinIO server; the per-bucket services only pick the bucket.
+abstract class AbstractMinioStorageService implements MinioStorageService {
+
+    private final MinioBuckets buckets;
+    private final long objectPartSize;
+    private final String bucket;
+    private final ParallelDownloadService parallelDownloadService;
+
+    AbstractMinioStorageService(MinioBuckets buckets, long objectPartSize, String bucket,
+            ParallelDownloadService parallelDownloadService) {
+        this.buckets = buckets;
+        this.objectPartSize = objectPartSize;
+        this.bucket = bucket;
+        this.parallelDownloadService = parallelDownloadService;
+    }
+
+    @Override
+    public void save(InputStream file, String name, long size, Map<String, String> userMetadata) throws Exception {
+        client().putObject(
+                PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .stream(file, size, objectPartSize)
+                        .userMetadata(userMetadata)
+                        .build()
+        );
+    }
+
+    @Override
+    public long save(InputStream file, String name, Map<String, String> userMetadata) throws Exception {
+        CountingInputStream counting = new CountingInputStream(file);
+        client().putObject(
+                PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .stream(counting, -1, objectPartSize)
+                        .userMetadata(userMetadata)
+                        .build()
+        );
+        return counting.getCount();
+    }
+
+    @Override
+    public void save(Path file, String name, Map<String, String> userMetadata) throws Exception {
+        client().uploadObject(
+                UploadObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .filename(file.toString(), objectPartSize)
+                        .userMetadata(userMetadata)
+                        .build()
+        );
+    }
+
+    @Override
+    public void delete(String name) throws Exception {
+        client().removeObject(
+                RemoveObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .build()
+        );
+    }
+
+    @Override
+    public InputStream getInputStream(String name, long offset, long length) throws Exception {
+        return client().getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .offset(offset)
+                        .length(length)
+                        .build()
+        );
+    }
+
+    @Override
+    public void download(String name, Path target) throws Exception {
+        // A single GET is limited by one connection; large objects are fetched as concurrent ranges instead.
+        parallelDownloadService.download(this, name, stat(name).size(), target);
+    }
+
+    @Override
+    public String getPresignedUrl(String name, int expirySeconds) throws Exception {
+        return client().getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.GET)
+                        .bucket(bucket)
+                        .object(name)
+                        .expiry(expirySeconds, TimeUnit.SECONDS)
+                        .build()
+        );
+    }
+
+    @Override
+    public ObjectInfo stat(String name) throws Exception {
+        StatObjectResponse stat = client().statObject(
+                StatObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(name)
+                        .build()
+        );
+        return new ObjectInfo(stat.bucket(), stat.object(), stat.size(), stat.etag(), stat.userMetadata());
+    }
+
+    // Only waits the first time, when the bucket check didn't finish at startup.
+    private MinioClient client() throws Exception {
+        buckets.await(bucket);
+        return buckets.client();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.media.FusedCommandPlanner;
+import com.dark.videostreaming.transcoding.media.PreviewCommandPlanner;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.MediaProbeService;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class AdmissionControllerImpl implements AdmissionController {
+
+    // Weight of a new observation in the running average of bytes per media second.
+    private static final double SMOOTHING = 0.2;
+
+    private final MediaProbeService mediaProbeService;
+    private final List<Rendition> ladder;
+    private final long memoryPerEncode;
+    private final String inputMode;
+
+    // Bytes per second of media across the sources probed so far, seeded from the configured nominal bitrate.
+    private volatile double bytesPerSecond;
+
+    public AdmissionControllerImpl(MediaProbeService mediaProbeService,
+            @Value("${transcoding.renditions.ladder}") String ladder,
+            @Value("${transcoding.admission.nominal-bitrate:8000000}") long nominalBitrate,
+            @Value("${transcoding.admission.memory-per-encode:536870912}") long memoryPerEncode,
+            @Value("${transcoding.input.mode:stream}") String inputMode) {
+        this.mediaProbeService = mediaProbeService;
+        this.ladder = Rendition.parseLadder(ladder);
+        this.memoryPerEncode = memoryPerEncode;
+        this.inputMode = inputMode;
+        this.bytesPerSecond = nominalBitrate / 8.0;
+    }
+
+    @Override
+    public JobCost estimate(String kind, MinioStorageService storage, String name, long inputBytes) {
+        Optional<MediaInfo> probed = cachedProbe(storage, name);
+        double duration = probed.map(MediaInfo::duration)
+                .filter(seconds -> seconds > 0)
+                .orElse(inputBytes / bytesPerSecond);
+        // A source is fetched whole in download mode, and in stream mode once its probe shows a container that
+        // can't be seeked remotely. Until a probe says so, stream mode is taken to stream.
+        long download = "download".equals(inputMode) || probed.filter(info -> !info.seekableRemotely()).isPresent()
+                ? inputBytes : 0;
+        // NOTE: Streamed sources still land in the workspace when their container can't be seeked remotely, so
+        // the source counts in stream mode too. The estimate also picks the workspace root, and a job that may
+        // write the whole source must not be put on the RAM root because its stream usually stays small.
+        long input = inputBytes;
+        double previewSeconds = Math.min(duration, 3 * PreviewCommandPlanner.CLIP_LENGTH);
+        return switch (kind) {
+            // The preview keeps a local copy of what it uploads, for the artifact cache.
+            case "preview" -> new JobCost(previewSeconds, 1, input + (long) (previewSeconds * bytesPerSecond),
+                    memoryPerEncode, download);
+            case "thumbnail" -> new JobCost(Math.min(duration, FusedCommandPlanner.THUMBNAIL_SCAN_LENGTH), 1,
+                    input, memoryPerEncode, download);
+            case "trickplay" -> new JobCost(duration, 1, input, memoryPerEncode, download);
+            case "renditions" -> new JobCost(duration, ladder.size(), input + ladderBytes(duration),
+                    ladder.size() * memoryPerEncode, download);
+            case "fused" -> new JobCost(duration, ladder.size() + 1, input + ladderBytes(duration),
+                    (ladder.size() + 1) * memoryPerEncode, download);
+            default -> throw new IllegalArgumentException("Unknown job kind " + kind);
+        };
+    }
+
+    // The probe cache is keyed by ETag, so this costs a stat of the source but never an ffprobe.
+    private Optional<MediaInfo> cachedProbe(MinioStorageService storage, String name) {
+        try {
+            return mediaProbeService.cached(storage.stat(name));
+        } catch (Exception e) {
+            log.debug("Couldn't stat {}, estimating it from its size", name, e);
+            return Optional.empty();
+        }
+    }
+
+    // Every rendition is written to the workspace before its segments are uploaded.
+    private long ladderBytes(double duration) {
+        long kbps = 0;
+        for (Rendition rendition : ladder) {
+            kbps += rendition.videoBitrate() + rendition.audioBitrate();
+        }
+        return (long) (kbps * 1000 / 8 * duration);
+    }
+
+    @Override
+    public void observe(long bytes, MediaInfo info) {
+        if (bytes <= 0 || info.duration() <= 0) {
+            return;
+        }
+        double observed = bytes / info.duration();
+        bytesPerSecond = bytesPerSecond * (1 - SMOOTHING) + observed * SMOOTHING;
+    }
+
+}
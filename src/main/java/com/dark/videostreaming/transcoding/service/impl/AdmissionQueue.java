@@ -0,0 +1,155 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.LongSupplier;
+
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+
+// The job scheduler's waiting room. Jobs sit in lanes by how long they hold a slot and leave in a smooth
+// weighted round robin, but only once their cost fits in what is left of the node's CPU, disk and memory
+// budgets. Not thread-safe; the scheduler guards it with its own lock.
+final class AdmissionQueue<T> {
+
+    private final double[] laneLimits;
+    private final double downloadRate;
+    private final int[] weights;
+    private final int[] currentWeights;
+    private final List<Queue<Entry<T>>> lanes = new ArrayList<>();
+    private final long maxWaitNanos;
+
+    private final int maxJobs;
+    private final long cpuBudget;
+    private final long diskBudget;
+    private final LongSupplier measuredDisk;
+    private final long memoryBudget;
+
+    private int admitted;
+    private long cpuUsed;
+    private long diskUsed;
+    private long memoryUsed;
+    private int size;
+
+    // laneLimits holds the upper bound in seconds of every lane but the last, which takes the rest. A job counts
+    // the media seconds it decodes plus the time its download takes at downloadRate bytes per second.
+    // measuredDisk reports what the running jobs really hold on disk; whichever is larger, that or the sum of
+    // their estimates, counts against the disk budget.
+    AdmissionQueue(double[] laneLimits, double downloadRate, int[] weights, long maxWaitNanos, int maxJobs,
+            long cpuBudget, long diskBudget, LongSupplier measuredDisk, long memoryBudget) {
+        if (weights.length != laneLimits.length + 1) {
+            throw new IllegalArgumentException("Need one lane weight more than lane limits");
+        }
+        this.laneLimits = laneLimits;
+        this.downloadRate = downloadRate;
+        this.weights = weights;
+        this.currentWeights = new int[weights.length];
+        this.maxWaitNanos = maxWaitNanos;
+        this.maxJobs = maxJobs;
+        this.cpuBudget = cpuBudget;
+        this.diskBudget = diskBudget;
+        this.measuredDisk = measuredDisk;
+        this.memoryBudget = memoryBudget;
+        for (int i = 0; i < weights.length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+    }
+
+    void add(T item, JobCost cost) {
+        double seconds = cost.mediaSeconds() + cost.downloadBytes() / downloadRate;
+        int lane = 0;
+        while (lane < laneLimits.length && seconds >= laneLimits[lane]) {
+            lane++;
+        }
+        lanes.get(lane).add(new Entry<>(item, cost, System.nanoTime()));
+        size++;
+    }
+
+    // Takes the next job to start and reserves its cost, or returns null when nothing waiting fits right now.
+    T poll() {
+        long now = System.nanoTime();
+        int starving = -1;
+        for (int i = 0; i < lanes.size(); i++) {
+            Entry<T> head = lanes.get(i).peek();
+            if (head != null && now - head.enqueuedNanos() > maxWaitNanos
+                    && (starving < 0 || head.enqueuedNanos() < lanes.get(starving).peek().enqueuedNanos())) {
+                starving = i;
+            }
+        }
+        if (starving >= 0) {
+            // NOTE: Holds everything else back until the oldest job fits, otherwise a steady stream of small jobs
+            // would keep a big one waiting forever.
+            return fits(lanes.get(starving).peek().cost()) ? take(starving) : null;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        int totalWeight = 0;
+        for (int i = 0; i < lanes.size(); i++) {
+            if (!lanes.get(i).isEmpty()) {
+                candidates.add(i);
+                totalWeight += weights[i];
+            }
+        }
+        candidates.sort(Comparator.comparingInt((Integer i) -> currentWeights[i] + weights[i]).reversed());
+        for (int lane : candidates) {
+            if (fits(lanes.get(lane).peek().cost())) {
+                for (int i : candidates) {
+                    currentWeights[i] += weights[i];
+                }
+                currentWeights[lane] -= totalWeight;
+                return take(lane);
+            }
+        }
+        return null;
+    }
+
+    void release(JobCost cost) {
+        admitted--;
+        cpuUsed -= cost.cpu();
+        diskUsed -= cost.diskBytes();
+        memoryUsed -= cost.memoryBytes();
+    }
+
+    int size() {
+        return size;
+    }
+
+    int admitted() {
+        return admitted;
+    }
+
+    boolean exhausted() {
+        return admitted >= maxJobs || cpuUsed >= cpuBudget || disk() >= diskBudget || memoryUsed >= memoryBudget;
+    }
+
+    // A job bigger than a whole budget still runs, alone, rather than never.
+    private boolean fits(JobCost cost) {
+        if (admitted == 0) {
+            return true;
+        }
+        return admitted < maxJobs
+                && cpuUsed + cost.cpu() <= cpuBudget
+                && disk() + cost.diskBytes() <= diskBudget
+                && memoryUsed + cost.memoryBytes() <= memoryBudget;
+    }
+
+    private long disk() {
+        return Math.max(diskUsed, measuredDisk.getAsLong());
+    }
+
+    private T take(int lane) {
+        Entry<T> entry = lanes.get(lane).poll();
+        size--;
+        admitted++;
+        cpuUsed += entry.cost().cpu();
+        diskUsed += entry.cost().diskBytes();
+        memoryUsed += entry.cost().memoryBytes();
+        return entry.item();
+    }
+
+    private record Entry<T>(T item, JobCost cost, long enqueuedNanos) {
+    }
+
+}
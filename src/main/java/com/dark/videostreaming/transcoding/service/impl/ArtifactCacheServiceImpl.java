@@ -0,0 +1,148 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.service.ArtifactCacheService;
+
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class ArtifactCacheServiceImpl implements ArtifactCacheService {
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    public ArtifactCacheServiceImpl(MeterRegistry meterRegistry,
+            @Value("${transcoding.artifact-cache.dir}") Path cacheDir,
+            @Value("${transcoding.artifact-cache.max-bytes}") long maxBytes) throws IOException {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        // NOTE: The index only lives in memory, so whatever a previous run left behind can't be trusted.
+        FileUtils.deleteDirectory(cacheDir.toFile());
+        Files.createDirectories(cacheDir);
+
+        this.hits = meterRegistry.counter("transcoding.artifact-cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("transcoding.artifact-cache.requests", "result", "miss");
+        this.bytesSaved = meterRegistry.counter("transcoding.artifact-cache.bytes-saved");
+        meterRegistry.gauge("transcoding.artifact-cache.size", this, cache -> cache.currentBytes());
+    }
+
+    @Override
+    public Optional<Path> get(String bucket, String name, String version, Path target) {
+        CachedFile cached;
+        synchronized (this) {
+            cached = entries.get(key(bucket, name, version));
+        }
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        try {
+            // The job gets its own link, so evicting the entry later can't pull the file out from under ffmpeg.
+            link(cached.path(), target);
+        } catch (IOException e) {
+            log.warn("Cached copy of {}/{} is gone, treating it as a miss", bucket, name, e);
+            synchronized (this) {
+                if (entries.remove(key(bucket, name, version)) == cached) {
+                    totalBytes -= cached.size();
+                }
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        bytesSaved.increment(cached.size());
+        return Optional.of(target);
+    }
+
+    @Override
+    public void put(String bucket, String name, String version, Path file) {
+        String key = key(bucket, name, version);
+        Path cachedPath = cacheDir.resolve(key);
+        try {
+            long size = Files.size(file);
+            if (size > maxBytes) {
+                return;
+            }
+            Files.deleteIfExists(cachedPath);
+            link(file, cachedPath);
+            synchronized (this) {
+                CachedFile previous = entries.put(key, new CachedFile(cachedPath, size));
+                if (previous != null) {
+                    totalBytes -= previous.size();
+                }
+                totalBytes += size;
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to cache {}/{}, but ignoring.", bucket, name, e);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CachedFile>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedFile evicted = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= evicted.size();
+            try {
+                Files.deleteIfExists(evicted.path());
+            } catch (IOException e) {
+                log.warn("Failed to delete evicted cache file {}, but ignoring.", evicted.path(), e);
+            }
+        }
+    }
+
+    private synchronized long currentBytes() {
+        return totalBytes;
+    }
+
+    private static void link(Path existing, Path link) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Different file systems or no hard link support, fall back to a plain copy.
+            Files.copy(existing, link, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String key(String bucket, String name, String version) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((bucket + "/" + name + "@" + version).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedFile(Path path, long size) {
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dark.videostreaming.transcoding.service.ArtifactDedupService;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Remembers which content keys already have an artifact. The index is an append-only file of
+// "key<TAB>name<TAB>size<TAB>createdAt" lines replayed at startup; a miss falls back to the object store, where
+// every artifact carries its content key as user metadata.
+// NOTE: Artifacts are never deleted once indexed. Anything that removes them from the buckets has to drop the
+// index file as well, otherwise jobs keep pointing at the removed objects.
+@Slf4j
+@Service
+public class ArtifactDedupServiceImpl implements ArtifactDedupService {
+
+    private static final String CONTENT_KEY_METADATA = "content-key";
+
+    private final boolean enabled;
+    private final Path indexFile;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, StoredArtifact> index = new ConcurrentHashMap<>();
+
+    // Set while the index ends in a line torn by a crash, which the next append must not be glued onto.
+    private boolean tornTail;
+
+    public ArtifactDedupServiceImpl(MeterRegistry meterRegistry,
+            @Value("${transcoding.dedup.enabled:true}") boolean enabled,
+            @Value("${transcoding.dedup.index-file}") Path indexFile) throws IOException {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.indexFile = indexFile;
+        if (enabled && Files.exists(indexFile)) {
+            String content = Files.readString(indexFile, StandardCharsets.UTF_8);
+            for (String line : content.lines().toList()) {
+                String[] fields = line.split("\t");
+                // A torn last line from a crash is skipped, whether it lost whole fields or was cut inside one.
+                if (fields.length != 4) {
+                    log.warn("Skipping malformed dedup index line '{}'", line);
+                    continue;
+                }
+                try {
+                    index.put(fields[0], new StoredArtifact(fields[1], Long.parseLong(fields[2]),
+                            Instant.parse(fields[3])));
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    log.warn("Skipping malformed dedup index line '{}'", line, e);
+                }
+            }
+            tornTail = !content.isEmpty() && !content.endsWith("\n");
+            log.info("Loaded {} deduplicated artifacts from {}", index.size(), indexFile);
+        }
+    }
+
+    @Override
+    public String contentKey(ObjectInfo source, String profile) {
+        // NOTE: The ETag is the MD5 of the object, or of its part MD5s for multipart uploads. Together with the
+        // size that's a content fingerprint that costs no extra read of the source.
+        String fingerprint = source.etag() + "|" + source.size() + "|" + profile;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Optional<StoredArtifact> find(MinioStorageService storage, String contentKey, String name) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        StoredArtifact indexed = index.get(contentKey);
+        if (indexed != null) {
+            count("index");
+            return Optional.of(indexed);
+        }
+        try {
+            ObjectInfo object = storage.stat(name);
+            if (contentKey.equals(object.userMetadata().get(CONTENT_KEY_METADATA))) {
+                // Produced by another node, or before the index was lost; the original creation time isn't kept.
+                StoredArtifact stored = new StoredArtifact(name, object.size(), Instant.now());
+                record(contentKey, stored);
+                count("storage");
+                return Optional.of(stored);
+            }
+        } catch (Exception e) {
+            log.debug("No stored artifact {} for content key {}", name, contentKey);
+        }
+        count("miss");
+        return Optional.empty();
+    }
+
+    @Override
+    public Map<String, String> metadata(String contentKey) {
+        return Map.of(CONTENT_KEY_METADATA, contentKey);
+    }
+
+    @Override
+    public void record(String contentKey, StoredArtifact artifact) {
+        if (!enabled || index.putIfAbsent(contentKey, artifact) != null) {
+            return;
+        }
+        String line = contentKey + "\t" + artifact.name() + "\t" + artifact.size() + "\t" + artifact.createdAt()
+                + "\n";
+        synchronized (this) {
+            try {
+                Files.createDirectories(indexFile.toAbsolutePath().getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    writer.write(tornTail ? "\n" + line : line);
+                }
+                tornTail = false;
+            } catch (IOException e) {
+                // The entry still serves this process; after a restart the object store lookup finds it again.
+                log.warn("Failed to persist dedup entry for {}", artifact.name(), e);
+            }
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("transcoding.dedup.lookups", "result", result).increment();
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.CheckpointService;
+import com.dark.videostreaming.transcoding.service.JobCheckpoint;
+import com.dark.videostreaming.transcoding.service.model.RetryPolicy;
+
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class CheckpointServiceImpl implements CheckpointService {
+
+    private static final String SOURCE_KEY = "source";
+
+    private final MeterRegistry meterRegistry;
+    private final Path root;
+    private final RetryPolicy retryPolicy;
+    private final Duration maxAge;
+
+    public CheckpointServiceImpl(MeterRegistry meterRegistry,
+            @Value("${transcoding.checkpoint.dir}") Path root,
+            @Value("${transcoding.checkpoint.max-attempts:3}") int maxAttempts,
+            @Value("${transcoding.checkpoint.initial-backoff:2s}") Duration initialBackoff,
+            @Value("${transcoding.checkpoint.max-backoff:1m}") Duration maxBackoff,
+            @Value("${transcoding.checkpoint.max-age:24h}") Duration maxAge) throws IOException {
+        this.meterRegistry = meterRegistry;
+        this.root = Files.createDirectories(root);
+        this.retryPolicy = new RetryPolicy(maxAttempts, initialBackoff, maxBackoff);
+        this.maxAge = maxAge;
+    }
+
+    // NOTE: The checkpoint is locked for as long as the job holds it open, so a second attempt of the same job,
+    // a redelivery racing a slow original here or on another node sharing the directory, fails instead of
+    // resuming from or wiping stage outputs that are still being written.
+    @Override
+    public JobCheckpoint open(String jobKey, String sourceVersion) throws IOException {
+        Path dir = Files.createDirectories(root.resolve(jobKey));
+        FileChannel lock = tryLock(dir);
+        if (lock == null) {
+            throw new CheckpointLockedException(jobKey);
+        }
+        try {
+            Properties state = new Properties();
+            Path stateFile = dir.resolve(JobCheckpoint.STATE_FILE);
+            if (Files.exists(stateFile)) {
+                try (InputStream in = Files.newInputStream(stateFile)) {
+                    state.load(in);
+                }
+            }
+            if (!sourceVersion.equals(state.getProperty(SOURCE_KEY))) {
+                // A new source, or no earlier attempt: whatever is in there was made from other bytes.
+                clean(dir);
+                state.clear();
+                state.setProperty(SOURCE_KEY, sourceVersion);
+            } else {
+                log.info("Resuming {} from its checkpoint", jobKey);
+            }
+            return new JobCheckpoint(dir, lock, state, retryPolicy,
+                    stage -> meterRegistry.counter("transcoding.stage.retries", "stage", stage).increment());
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
+
+    // The lock file's channel, holding an exclusive lock on it, or null when another attempt holds it.
+    private static FileChannel tryLock(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(JobCheckpoint.LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another job of this process.
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return null;
+    }
+
+    private static void clean(Path dir) throws IOException {
+        List<Path> children;
+        try (Stream<Path> list = Files.list(dir)) {
+            children = list.filter(child -> !child.getFileName().toString().equals(JobCheckpoint.LOCK_FILE))
+                    .toList();
+        }
+        for (Path child : children) {
+            FileUtils.forceDelete(child.toFile());
+        }
+    }
+
+    // Checkpoints of jobs whose node crashed and whose records were redelivered to another node.
+    @Scheduled(fixedDelayString = "${transcoding.checkpoint.sweep-interval:1h}")
+    public void sweep() throws IOException {
+        Instant cutoff = Instant.now().minus(maxAge);
+        List<Path> dirs;
+        try (Stream<Path> children = Files.list(root)) {
+            dirs = children.filter(Files::isDirectory).toList();
+        }
+        for (Path dir : dirs) {
+            if (!Files.getLastModifiedTime(dir).toInstant().isBefore(cutoff)) {
+                continue;
+            }
+            // A job that has been running for that long still holds its lock.
+            try (FileChannel lock = tryLock(dir)) {
+                if (lock != null) {
+                    log.info("Dropping stale checkpoint {}", dir.getFileName());
+                    FileUtils.deleteQuietly(dir.toFile());
+                }
+            } catch (IOException e) {
+                log.warn("Failed to lock checkpoint {}, leaving it", dir.getFileName(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.media.ChunkCommandPlanner;
+import com.dark.videostreaming.transcoding.service.ChunkedEncodingService;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class ChunkedEncodingServiceImpl implements ChunkedEncodingService {
+
+    private final TranscodingScheduler transcodingScheduler;
+    private final FfmpegSupervisor ffmpegSupervisor;
+
+    @Value("${transcoding.chunked.enabled:false}")
+    private boolean enabled;
+
+    @Value("${transcoding.chunked.chunk-seconds:30}")
+    private int chunkSeconds;
+
+    @Value("${transcoding.chunked.min-duration:300}")
+    private double minDuration;
+
+    @Value("${transcoding.chunked.duration-tolerance:0.5}")
+    private double durationTolerance;
+
+    @Override
+    public boolean shouldChunk(MediaInfo info) {
+        return enabled && info.duration() >= minDuration;
+    }
+
+    @Override
+    public void encodeHls(MediaSource source, List<Rendition> renditions, int segmentSeconds, Path workDir,
+            Path hlsDir, Consumer<Rendition> onRenditionDone) throws Exception {
+        Path chunkDir = Files.createDirectory(workDir.resolve("chunks"));
+        transcodingScheduler.runEncode(() -> {
+            ffmpegSupervisor.run("chunk-split",
+                    ChunkCommandPlanner.splitCommand(source, chunkSeconds, chunkDir.toString()), null);
+            return chunkDir;
+        });
+        List<Path> chunks;
+        try (Stream<Path> files = Files.list(chunkDir)) {
+            chunks = files.sorted().toList();
+        }
+        if (chunks.isEmpty()) {
+            throw new IOException("Splitting the source produced no chunks");
+        }
+        long expectedFrames = source.info().frameCount() > 0 ? source.info().frameCount() : countFrames(chunks);
+        log.info("Encoding {} chunks of ~{}s for {} renditions", chunks.size(), chunkSeconds, renditions.size());
+
+        // Many small encodes run side by side here, so each one only gets its share of the cores.
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / transcodingScheduler.encodeSlots());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Rendition>> futures = new ArrayList<>();
+            for (Rendition rendition : renditions) {
+                futures.add(executor.submit(() -> {
+                    Path encodedDir = Files.createDirectory(workDir.resolve("encoded_" + rendition.name()));
+                    List<Path> encoded = encodeChunks(executor, chunks, rendition, source.info(), segmentSeconds,
+                            threads, encodedDir);
+                    Path listPath = encodedDir.resolve("filelist.txt");
+                    Files.writeString(listPath, ChunkCommandPlanner.concatList(encoded));
+                    transcodingScheduler.runEncode(() -> {
+                        ffmpegSupervisor.run("chunk-stitch-" + rendition.name(),
+                                ChunkCommandPlanner.stitchCommand(listPath.toString(), source, rendition,
+                                        segmentSeconds, hlsDir.toString()), null);
+                        return rendition;
+                    });
+                    verify(hlsDir.resolve(rendition.name() + ".m3u8"), source.info().duration(), expectedFrames,
+                            chunks.size());
+                    onRenditionDone.accept(rendition);
+                    return rendition;
+                }));
+            }
+            for (Future<Rendition> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private List<Path> encodeChunks(ExecutorService executor, List<Path> chunks, Rendition rendition,
+            MediaInfo info, int segmentSeconds, int threads, Path outputDir) throws Exception {
+        List<Future<Path>> futures = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Path chunk = chunks.get(i);
+            Path output = outputDir.resolve(String.format("encoded_%05d.mp4", i));
+            futures.add(executor.submit(() -> transcodingScheduler.runEncode(() -> {
+                ffmpegSupervisor.run("chunk-encode-" + rendition.name() + "-" + chunk.getFileName(),
+                        ChunkCommandPlanner.encodeChunkCommand(chunk, rendition, info, segmentSeconds, threads, output),
+                        null);
+                return output;
+            })));
+        }
+        List<Path> encoded = new ArrayList<>(futures.size());
+        for (Future<Path> future : futures) {
+            encoded.add(future.get());
+        }
+        return encoded;
+    }
+
+    private void verify(Path output, double expectedDuration, long expectedFrames, int chunkCount)
+            throws IOException, InterruptedException {
+        long frames = 0;
+        double duration = 0;
+        for (String line : probe(output.toString()).split("\n")) {
+            if (line.startsWith("nb_read_packets=")) {
+                frames = Long.parseLong(line.substring("nb_read_packets=".length()).trim());
+            } else if (line.startsWith("duration=") && !line.endsWith("N/A")) {
+                duration = Double.parseDouble(line.substring("duration=".length()).trim());
+            }
+        }
+        // Every chunk boundary may shift the stream by a frame, but never more than that.
+        if (Math.abs(frames - expectedFrames) > chunkCount) {
+            throw new IOException("Stitched output " + output.getFileName() + " has " + frames
+                    + " frames, expected " + expectedFrames);
+        }
+        if (Math.abs(duration - expectedDuration) > durationTolerance) {
+            throw new IOException("Stitched output " + output.getFileName() + " lasts " + duration
+                    + "s, expected " + expectedDuration + "s");
+        }
+    }
+
+    private long countFrames(List<Path> chunks) throws IOException, InterruptedException {
+        long frames = 0;
+        for (Path chunk : chunks) {
+            for (String line : probe(chunk.toString()).split("\n")) {
+                if (line.startsWith("nb_read_packets=")) {
+                    frames += Long.parseLong(line.substring("nb_read_packets=".length()).trim());
+                }
+            }
+        }
+        return frames;
+    }
+
+    private String probe(String location) throws IOException, InterruptedException {
+        return ffmpegSupervisor.capture("count-frames", ChunkCommandPlanner.countFramesCommand(location));
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.model.FfmpegProgress;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class FfmpegSupervisorImpl implements FfmpegSupervisor {
+
+    private static final Path NICE = Path.of("/usr/bin/nice");
+
+    private final Duration timeout;
+    private final Duration stallTimeout;
+    private final Duration probeTimeout;
+    private final int threads;
+    private final int niceness;
+    private final int stderrTailLines;
+
+    public FfmpegSupervisorImpl(TranscodingScheduler transcodingScheduler,
+            @Value("${transcoding.ffmpeg.timeout:4h}") Duration timeout,
+            @Value("${transcoding.ffmpeg.stall-timeout:120s}") Duration stallTimeout,
+            @Value("${transcoding.ffmpeg.probe-timeout:2m}") Duration probeTimeout,
+            @Value("${transcoding.ffmpeg.threads:0}") int threads,
+            @Value("${transcoding.ffmpeg.nice:10}") int niceness,
+            @Value("${transcoding.ffmpeg.stderr-tail-lines:20}") int stderrTailLines) {
+        this.timeout = timeout;
+        this.stallTimeout = stallTimeout;
+        this.probeTimeout = probeTimeout;
+        // By default every encode slot gets an equal share of the cores, so a single encode can't starve the rest.
+        this.threads = threads > 0 ? threads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / transcodingScheduler.encodeSlots());
+        this.niceness = Files.isExecutable(NICE) ? niceness : 0;
+        this.stderrTailLines = stderrTailLines;
+    }
+
+    @Override
+    public void run(String name, List<String> command, Consumer<FfmpegProgress> onProgress)
+            throws IOException, InterruptedException {
+        try {
+            execute(name, command, onProgress, null);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String capture(String name, List<String> command) throws IOException, InterruptedException {
+        try {
+            return execute(name, command, null, stdout -> new String(stdout.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public <T> T readStdout(String name, List<String> command, StdoutReader<T> reader) throws Exception {
+        return execute(name, command, null, reader);
+    }
+
+    private <T> T execute(String name, List<String> command, Consumer<FfmpegProgress> onProgress,
+            StdoutReader<T> reader) throws Exception {
+        boolean ffmpeg = "ffmpeg".equals(command.get(0));
+        ProcessBuilder builder = new ProcessBuilder(supervised(command, ffmpeg));
+        if (reader == null) {
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        }
+        Process process = builder.start();
+        SupervisedProcess supervised = new SupervisedProcess(name, process, onProgress, stderrTailLines);
+        Thread stderrPump = Thread.ofVirtual().name(name + "-stderr").start(supervised::pumpStderr);
+        Thread watchdog = Thread.ofVirtual().name(name + "-watchdog")
+                .start(() -> supervised.watch(ffmpeg ? timeout : probeTimeout, ffmpeg ? stallTimeout : null));
+        try {
+            T result = null;
+            if (reader != null) {
+                try (InputStream stdout = process.getInputStream()) {
+                    result = reader.read(stdout);
+                } catch (Exception e) {
+                    // A killed process closes stdout under the reader, the kill reason is the actual failure.
+                    if (supervised.killReason() != null) {
+                        throw supervised.failure(-1);
+                    }
+                    throw e;
+                }
+            }
+            int exitCode = process.waitFor();
+            stderrPump.join();
+            if (exitCode != 0 || supervised.killReason() != null) {
+                throw supervised.failure(exitCode);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            supervised.kill("cancelled");
+            throw e;
+        } finally {
+            watchdog.interrupt();
+            if (process.isAlive()) {
+                supervised.kill("abandoned by its caller");
+            }
+        }
+    }
+
+    private List<String> supervised(List<String> command, boolean ffmpeg) {
+        List<String> supervised = new ArrayList<>(command.size() + 16);
+        if (niceness > 0) {
+            supervised.addAll(List.of(NICE.toString(), "-n", String.valueOf(niceness)));
+        }
+        supervised.add(command.get(0));
+        if (ffmpeg) {
+            // NOTE: Progress goes to stderr since stdout may carry the output itself; only errors are logged, so
+            // the stderr tail of a failed run is the actual cause instead of the banner and stream info.
+            supervised.addAll(List.of(
+                    "-hide_banner",
+                    "-nostdin",
+                    "-nostats",
+                    "-v", "error",
+                    "-progress", "pipe:2",
+                    "-filter_threads", String.valueOf(threads)));
+        }
+        List<String> arguments = command.subList(1, command.size());
+        if (ffmpeg && !arguments.contains("-threads")) {
+            // Output options go right before the output, which is always the last argument.
+            supervised.addAll(arguments.subList(0, arguments.size() - 1));
+            supervised.addAll(List.of("-threads", String.valueOf(threads)));
+            supervised.add(arguments.get(arguments.size() - 1));
+        } else {
+            supervised.addAll(arguments);
+        }
+        return supervised;
+    }
+
+}
@@ -0,0 +1,335 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.RenditionUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.ThumbnailUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.media.FusedCommandPlanner;
+import com.dark.videostreaming.transcoding.media.RenditionCommandPlanner;
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.ArtifactDedupService;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.FusedTranscodingService;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.PreviewStorageService;
+import com.dark.videostreaming.transcoding.service.RenditionStorageService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.ThumbnailSelectionService;
+import com.dark.videostreaming.transcoding.service.ThumbnailStorageService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.VideoStorageService;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Preview, poster thumbnail and rendition ladder from a single decode of the source. Every artifact still gets
+// the status events its own pipeline would publish, so consumers can't tell the two modes apart. With thumbnail
+// selection on, the poster takes one more pass over the source, the thumbnail filter's frame from the shared
+// decode is the fallback.
+@Slf4j
+@Service
+public class FusedTranscodingServiceImpl implements FusedTranscodingService {
+
+    private static final String PIPELINE = "fused";
+
+    private final VideoStorageService videoStorageService;
+    private final PreviewStorageService previewStorageService;
+    private final ThumbnailStorageService thumbnailStorageService;
+    private final ThumbnailSelectionService thumbnailSelectionService;
+    private final RenditionStorageService renditionStorageService;
+    private final StatusPublisher statusPublisher;
+    private final TranscodingScheduler transcodingScheduler;
+    private final SourceInputService sourceInputService;
+    private final ArtifactDedupService artifactDedupService;
+    private final PipelineMetrics pipelineMetrics;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final AdmissionController admissionController;
+
+    private final List<Rendition> ladder;
+
+    @Value("${transcoding.renditions.enabled:false}")
+    private boolean renditionsEnabled;
+
+    @Value("${transcoding.renditions.segment-seconds:4}")
+    private int segmentSeconds;
+
+    @Value("${transcoding.renditions.dash-enabled:false}")
+    private boolean dashEnabled;
+
+    @Value("${transcoding.renditions.max-concurrent-uploads:4}")
+    private int maxConcurrentUploads;
+
+    public FusedTranscodingServiceImpl(VideoStorageService videoStorageService,
+            PreviewStorageService previewStorageService,
+            ThumbnailStorageService thumbnailStorageService,
+            ThumbnailSelectionService thumbnailSelectionService,
+            RenditionStorageService renditionStorageService,
+            StatusPublisher statusPublisher,
+            TranscodingScheduler transcodingScheduler,
+            SourceInputService sourceInputService,
+            ArtifactDedupService artifactDedupService,
+            PipelineMetrics pipelineMetrics,
+            FfmpegSupervisor ffmpegSupervisor,
+            AdmissionController admissionController,
+            @Value("${transcoding.renditions.ladder}") String ladder) {
+        this.videoStorageService = videoStorageService;
+        this.previewStorageService = previewStorageService;
+        this.thumbnailStorageService = thumbnailStorageService;
+        this.thumbnailSelectionService = thumbnailSelectionService;
+        this.renditionStorageService = renditionStorageService;
+        this.statusPublisher = statusPublisher;
+        this.transcodingScheduler = transcodingScheduler;
+        this.sourceInputService = sourceInputService;
+        this.artifactDedupService = artifactDedupService;
+        this.pipelineMetrics = pipelineMetrics;
+        this.ffmpegSupervisor = ffmpegSupervisor;
+        this.admissionController = admissionController;
+        this.ladder = Rendition.parseLadder(ladder);
+    }
+
+    @Override
+    public CompletableFuture<Void> transcode(VideoUploadedEvent event) {
+        return transcodingScheduler.submit("fused-" + event.videoId(),
+                admissionController.estimate("fused", videoStorageService, event.fileName(), event.fileSize()),
+                () -> transcodeFused(event.videoId(), event.fileName()));
+    }
+
+    private void transcodeFused(long videoId, String filename) {
+        boolean previewPending = false;
+        boolean thumbnailPending = false;
+        boolean renditionsPending = false;
+        try (JobWorkspace workspace = transcodingScheduler.openWorkspace("fused-" + videoId)) {
+            ObjectInfo object = videoStorageService.stat(filename);
+            String previewKey = artifactDedupService.contentKey(object, FusedCommandPlanner.PREVIEW_PROFILE);
+            String previewName = previewKey + "_preview.mp4";
+            Optional<StoredArtifact> existingPreview = artifactDedupService.find(previewStorageService, previewKey,
+                    previewName);
+            String thumbnailKey = artifactDedupService.contentKey(object, thumbnailProfile());
+            String thumbnailName = thumbnailKey + "_thumbnail.png";
+            Optional<StoredArtifact> existingThumbnail = artifactDedupService.find(thumbnailStorageService,
+                    thumbnailKey, thumbnailName);
+
+            // The separate pipelines announce the thumbnail only once the preview is out; the order is kept.
+            if (existingPreview.isPresent()) {
+                publishPreview(videoId, existingPreview.get());
+            } else {
+                previewPending = true;
+                publishPreview(PreviewUpdateEvent.builder().videoId(videoId).status("processing").build());
+            }
+            // A thumbnail that already exists waits for a preview that still has to be made.
+            if (existingThumbnail.isPresent() && !previewPending) {
+                publishThumbnail(videoId, existingThumbnail.get());
+            }
+            renditionsPending = renditionsEnabled;
+            if (renditionsPending) {
+                publishRendition(RenditionUpdateEvent.builder().videoId(videoId).status("processing").build());
+            }
+            if (!previewPending && existingThumbnail.isPresent() && !renditionsPending) {
+                log.info("Video {} already has every fused artifact, skipping the encode", videoId);
+                return;
+            }
+
+            MediaSource source = sourceInputService.open(PIPELINE, videoStorageService, object, workspace);
+            List<Rendition> renditions = renditionsPending
+                    ? RenditionCommandPlanner.selectLadder(ladder, source.info())
+                    : List.of();
+            Path dir = Files.createDirectory(workspace.resolve("fused"));
+            Path hlsDir = Files.createDirectory(dir.resolve("hls"));
+            Path preview = previewPending ? dir.resolve("preview.mp4") : null;
+            Path thumbnail = existingThumbnail.isEmpty() ? dir.resolve("thumbnail.png") : null;
+            double duration = source.info().duration();
+
+            String prefix = videoId + "/";
+            try (HlsSegmentUploader uploader = new HlsSegmentUploader(renditionStorageService, hlsDir,
+                    prefix + "hls/", maxConcurrentUploads)) {
+                uploader.start();
+                int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, renditions.size()));
+                List<String> command = FusedCommandPlanner.fusedCommand(source,
+                        preview == null ? null : preview.toString(),
+                        thumbnail == null ? null : thumbnail.toString(),
+                        renditions, segmentSeconds, threads, hlsDir.toString());
+                transcodingScheduler.runEncode(() -> {
+                    long start = System.nanoTime();
+                    pipelineMetrics.time(PIPELINE, "encode", () -> {
+                        ffmpegSupervisor.run("fused-" + videoId, command, progress -> {
+                            if (!renditions.isEmpty() && duration > 0) {
+                                sendRenditionProgress(videoId, renditions.size(),
+                                        Math.min(1, progress.outTimeSeconds() / duration));
+                            }
+                        });
+                        return dir;
+                    });
+                    pipelineMetrics.encoded(PIPELINE, duration, System.nanoTime() - start);
+                    return dir;
+                });
+
+                if (preview != null) {
+                    StoredArtifact stored = upload(previewStorageService, preview, previewName, previewKey);
+                    previewPending = false;
+                    publishPreview(videoId, stored);
+                    if (existingThumbnail.isPresent()) {
+                        publishThumbnail(videoId, existingThumbnail.get());
+                    }
+                }
+                if (thumbnail != null) {
+                    thumbnailPending = true;
+                    publishThumbnail(ThumbnailUpdateEvent.builder().videoId(videoId).status("processing").build());
+                    Path poster = transcodingScheduler.runEncode(() -> selectPoster(videoId, source, dir, thumbnail));
+                    StoredArtifact stored = upload(thumbnailStorageService, poster, thumbnailName, thumbnailKey);
+                    thumbnailPending = false;
+                    publishThumbnail(videoId, stored);
+                }
+
+                if (!renditions.isEmpty()) {
+                    Files.writeString(hlsDir.resolve(RenditionCommandPlanner.MASTER_PLAYLIST),
+                            RenditionCommandPlanner.masterPlaylist(renditions, source.info()));
+                }
+                uploader.finish();
+            }
+
+            if (renditionsPending) {
+                String dashManifest = null;
+                if (dashEnabled) {
+                    Path dashDir = Files.createDirectory(dir.resolve("dash"));
+                    transcodingScheduler.runEncode(() -> {
+                        ffmpegSupervisor.run("dash-" + videoId, RenditionCommandPlanner.dashCommand(renditions,
+                                source.info().hasAudio(), hlsDir.toString(), dashDir.toString()), null);
+                        return dashDir;
+                    });
+                    uploadDirectory(dashDir, prefix + "dash/");
+                    dashManifest = prefix + "dash/" + RenditionCommandPlanner.DASH_MANIFEST;
+                }
+                renditionsPending = false;
+                publishRendition(RenditionUpdateEvent.builder()
+                        .videoId(videoId)
+                        .manifest(prefix + "hls/" + RenditionCommandPlanner.MASTER_PLAYLIST)
+                        .dashManifest(dashManifest)
+                        .progress(1)
+                        .status("ready")
+                        .createdAt(Instant.now())
+                        .build());
+            }
+        } catch (Exception e) {
+            // One process made all of them, so everything not announced yet failed with it.
+            if (previewPending) {
+                publishPreview(PreviewUpdateEvent.builder().videoId(videoId).status("failed").build());
+            }
+            if (thumbnailPending) {
+                publishThumbnail(ThumbnailUpdateEvent.builder().videoId(videoId).status("failed").build());
+            }
+            if (renditionsPending) {
+                publishRendition(RenditionUpdateEvent.builder().videoId(videoId).status("failed").build());
+            }
+            throw new RuntimeException("Failed to run fused transcode: ", e);
+        }
+    }
+
+    private String thumbnailProfile() {
+        return thumbnailSelectionService.isEnabled()
+                ? FusedCommandPlanner.THUMBNAIL_PROFILE + ":" + thumbnailSelectionService.profile()
+                : FusedCommandPlanner.THUMBNAIL_PROFILE;
+    }
+
+    private Path selectPoster(long videoId, MediaSource source, Path dir, Path fallback) throws Exception {
+        if (!thumbnailSelectionService.isEnabled()) {
+            return fallback;
+        }
+        OptionalDouble timestamp = pipelineMetrics.time(PIPELINE, "select",
+                () -> thumbnailSelectionService.select("thumbnail-select-" + videoId, source));
+        if (timestamp.isEmpty()) {
+            log.info("No candidate frame of video {} is usable as a poster, using the thumbnail filter", videoId);
+            return fallback;
+        }
+        Path poster = dir.resolve("poster.png");
+        thumbnailSelectionService.extract("thumbnail-extract-" + videoId, source, timestamp.getAsDouble(), poster);
+        return poster;
+    }
+
+    private StoredArtifact upload(MinioStorageService storage, Path file, String name, String contentKey)
+            throws Exception {
+        long size = Files.size(file);
+        long start = System.nanoTime();
+        pipelineMetrics.time(PIPELINE, "upload", () -> {
+            storage.save(file, name, artifactDedupService.metadata(contentKey));
+            return size;
+        });
+        pipelineMetrics.transferred(PIPELINE, "upload", size, System.nanoTime() - start);
+        StoredArtifact artifact = new StoredArtifact(name, size, Instant.now());
+        artifactDedupService.record(contentKey, artifact);
+        return artifact;
+    }
+
+    private void uploadDirectory(Path dir, String prefix) throws Exception {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            renditionStorageService.save(file, prefix + dir.relativize(file).toString().replace('\\', '/'));
+        }
+    }
+
+    // Same scale as the separate pipeline: every rendition has encoded the same share, the upload is the rest.
+    private void sendRenditionProgress(long videoId, int renditions, double encoded) {
+        publishRendition(RenditionUpdateEvent.builder()
+                .videoId(videoId)
+                .progress(encoded * renditions / (renditions + 1))
+                .status("processing")
+                .build());
+    }
+
+    private void publishPreview(long videoId, StoredArtifact preview) {
+        publishPreview(PreviewUpdateEvent.builder()
+                .videoId(videoId)
+                .name(preview.name())
+                .size(preview.size())
+                .createdAt(preview.createdAt())
+                .status("ready")
+                .build());
+    }
+
+    private void publishThumbnail(long videoId, StoredArtifact thumbnail) {
+        publishThumbnail(ThumbnailUpdateEvent.builder()
+                .videoId(videoId)
+                .name(thumbnail.name())
+                .createdAt(thumbnail.createdAt())
+                .size(thumbnail.size())
+                .status("ready")
+                .build());
+    }
+
+    private void publishPreview(PreviewUpdateEvent updateEvent) {
+        statusPublisher.publish("video.preview.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<PreviewUpdateEvent>("PreviewUpdateEvent", "1.0", Instant.now(), updateEvent));
+    }
+
+    private void publishThumbnail(ThumbnailUpdateEvent updateEvent) {
+        statusPublisher.publish("video.thumbnail.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<ThumbnailUpdateEvent>("ThumbnailUpdateEvent", "1.0", Instant.now(), updateEvent));
+    }
+
+    private void publishRendition(RenditionUpdateEvent updateEvent) {
+        statusPublisher.publish("video.rendition.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<RenditionUpdateEvent>("RenditionUpdateEvent", "1.0", Instant.now(), updateEvent));
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Uploads HLS segments while ffmpeg is still producing the next ones. The encoders run with
+// "-hls_flags temp_file", so a segment only shows up under its final name once it is complete.
+@Slf4j
+class HlsSegmentUploader implements AutoCloseable {
+
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private final MinioStorageService storage;
+    private final Path dir;
+    private final String prefix;
+    private final Semaphore uploadPermits;
+
+    private final Set<Path> submitted = new HashSet<>();
+    private final List<Future<?>> uploads = new ArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean encoding = true;
+    private Future<?> poller;
+
+    HlsSegmentUploader(MinioStorageService storage, Path dir, String prefix, int maxConcurrentUploads) {
+        this.storage = storage;
+        this.dir = dir;
+        this.prefix = prefix;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
+    }
+
+    void start() {
+        poller = executor.submit(() -> {
+            while (encoding) {
+                uploadCompletedSegments();
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            return null;
+        });
+    }
+
+    // Called once every encoder has exited: uploads whatever is left, playlists included.
+    void finish() throws Exception {
+        encoding = false;
+        poller.get();
+        List<Path> remaining;
+        try (Stream<Path> files = Files.list(dir)) {
+            remaining = files.filter(Files::isRegularFile).toList();
+        }
+        synchronized (this) {
+            for (Path file : remaining) {
+                submit(file);
+            }
+        }
+        for (Future<?> upload : uploads) {
+            upload.get();
+        }
+    }
+
+    private synchronized void uploadCompletedSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".ts")).forEach(this::submit);
+        }
+    }
+
+    private void submit(Path file) {
+        if (!submitted.add(file)) {
+            return;
+        }
+        uploads.add(executor.submit(() -> {
+            uploadPermits.acquire();
+            try {
+                storage.save(file, prefix + file.getFileName());
+            } finally {
+                uploadPermits.release();
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public void close() {
+        encoding = false;
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.dark.videostreaming.transcoding.config.MinioConfig;
+import com.dark.videostreaming.transcoding.service.RenditionStorageService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+@Service
+public class LocalRenditionStorageServiceImpl extends AbstractLocalStorageService implements RenditionStorageService {
+
+    public LocalRenditionStorageServiceImpl(@Value("${storage.local.root}") Path root) throws IOException {
+        super(root, MinioConfig.RENDITION_BUCKET_NAME);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.dark.videostreaming.transcoding.config.MinioConfig;
+import com.dark.videostreaming.transcoding.service.ThumbnailStorageService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+@Service
+public class LocalThumbnailStorageServiceImpl extends AbstractLocalStorageService implements ThumbnailStorageService {
+
+    public LocalThumbnailStorageServiceImpl(@Value("${storage.local.root}") Path root) throws IOException {
+        super(root, MinioConfig.THUMBNAIL_BUCKET_NAME);
+    }
+
+}
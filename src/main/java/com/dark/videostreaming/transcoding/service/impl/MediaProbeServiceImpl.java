@@ -0,0 +1,167 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.MediaProbeService;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class MediaProbeServiceImpl implements MediaProbeService {
+
+    // Only the start of the video stream is scanned for keyframes, so probing a remote source stays cheap.
+    private static final String KEYFRAME_SCAN_INTERVAL = "%+10";
+
+    // Rough heap footprint of a cache entry besides its characters: the cache node and the headers and primitive
+    // fields of the key and the MediaInfo.
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final ObjectMapper objectMapper;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final Cache<String, MediaInfo> cache;
+
+    public MediaProbeServiceImpl(ObjectMapper objectMapper, FfmpegSupervisor ffmpegSupervisor,
+            MeterRegistry meterRegistry, @Value("${transcoding.probe-cache.max-bytes:8388608}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.ffmpegSupervisor = ffmpegSupervisor;
+        // Weighed rather than counted, an entry grows with the object name in its key.
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(MediaProbeServiceImpl::weigh)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "media-probe");
+    }
+
+    @Override
+    public MediaInfo probe(ObjectInfo object, String location) throws Exception {
+        // NOTE: The ETag changes whenever the object is overwritten, so an entry never outlives the bytes it
+        // describes and nothing needs to be invalidated by hand.
+        String key = key(object);
+        MediaInfo cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        MediaInfo info = probe(location);
+        cache.put(key, info);
+        return info;
+    }
+
+    @Override
+    public Optional<MediaInfo> cached(ObjectInfo object) {
+        return Optional.ofNullable(cache.getIfPresent(key(object)));
+    }
+
+    private static String key(ObjectInfo object) {
+        return object.bucket() + "/" + object.name() + "@" + object.etag();
+    }
+
+    private static int weigh(String key, MediaInfo info) {
+        return ENTRY_OVERHEAD + 2 * (key.length() + length(info.formatName()) + length(info.videoCodec())
+                + length(info.audioCodec()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    @Override
+    public MediaInfo probe(String location) throws Exception {
+        JsonNode root = objectMapper.readTree(run(
+                "ffprobe",
+                "-v", "error",
+                "-print_format", "json",
+                "-show_format",
+                "-show_streams",
+                location));
+        JsonNode format = root.path("format");
+        JsonNode video = null;
+        JsonNode audio = null;
+        for (JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            if (video == null && "video".equals(type)) {
+                video = stream;
+            } else if (audio == null && "audio".equals(type)) {
+                audio = stream;
+            }
+        }
+        if (!format.hasNonNull("duration")) {
+            log.error("Couldn't figure out Duration of the Video: {}", location);
+            throw new RuntimeException("Unable to read Duration");
+        }
+        if (video == null) {
+            throw new RuntimeException("No video stream found");
+        }
+        return new MediaInfo(
+                format.path("duration").asDouble(),
+                format.path("format_name").asText(null),
+                format.path("bit_rate").asLong(),
+                video.path("codec_name").asText(null),
+                video.path("width").asInt(),
+                video.path("height").asInt(),
+                parseRate(video.path("avg_frame_rate").asText()),
+                video.path("nb_frames").asLong(),
+                video.path("bit_rate").asLong(),
+                probeKeyframeInterval(location),
+                audio == null ? null : audio.path("codec_name").asText(null));
+    }
+
+    private double probeKeyframeInterval(String location) throws IOException, InterruptedException {
+        String packets = run(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags",
+                "-read_intervals", KEYFRAME_SCAN_INTERVAL,
+                "-of", "csv=p=0",
+                location);
+        double first = -1;
+        double last = -1;
+        int count = 0;
+        for (String line : packets.split("\n")) {
+            String[] fields = line.split(",");
+            if (fields.length < 2 || !fields[1].startsWith("K") || "N/A".equals(fields[0])) {
+                continue;
+            }
+            double pts = Double.parseDouble(fields[0]);
+            if (first < 0) {
+                first = pts;
+            }
+            last = pts;
+            count++;
+        }
+        // A single keyframe in the scanned window means the GOP is at least that long; 0 means unknown.
+        return count > 1 ? (last - first) / (count - 1) : 0;
+    }
+
+    private static double parseRate(String rate) {
+        String[] parts = rate.split("/");
+        try {
+            double numerator = Double.parseDouble(parts[0]);
+            double denominator = parts.length > 1 ? Double.parseDouble(parts[1]) : 1;
+            return denominator == 0 ? 0 : numerator / denominator;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String run(String... command) throws IOException, InterruptedException {
+        return ffmpegSupervisor.capture("ffprobe", List.of(command));
+    }
+
+}
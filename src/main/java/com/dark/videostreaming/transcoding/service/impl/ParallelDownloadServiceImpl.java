@@ -0,0 +1,230 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.ParallelDownloadService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class ParallelDownloadServiceImpl implements ParallelDownloadService {
+
+    private static final long ADAPT_INTERVAL_MILLIS = 1000;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    private final long rangeSize;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final int bufferSize;
+    private final long minParallelSize;
+    private final Counter retries;
+
+    // The concurrency the last download settled on, where the next one starts climbing from.
+    private final AtomicInteger learnedConcurrency;
+
+    public ParallelDownloadServiceImpl(MeterRegistry meterRegistry,
+            @Value("${transcoding.download.range-size:16777216}") long rangeSize,
+            @Value("${transcoding.download.min-concurrency:2}") int minConcurrency,
+            @Value("${transcoding.download.max-concurrency:16}") int maxConcurrency,
+            @Value("${transcoding.download.max-retries:3}") int maxRetries,
+            @Value("${transcoding.download.buffer-size:1048576}") int bufferSize,
+            @Value("${transcoding.download.min-parallel-size:67108864}") long minParallelSize) {
+        this.rangeSize = rangeSize;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.maxRetries = maxRetries;
+        this.bufferSize = bufferSize;
+        this.minParallelSize = minParallelSize;
+        this.learnedConcurrency = new AtomicInteger(Math.min(this.maxConcurrency, this.minConcurrency * 2));
+        this.retries = meterRegistry.counter("transcoding.download.retries");
+        Gauge.builder("transcoding.download.concurrency", learnedConcurrency, AtomicInteger::get)
+                .description("Concurrent ranges the last parallel download settled on")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void download(MinioStorageService storage, String name, long size, Path target) throws Exception {
+        if (size < minParallelSize) {
+            try (InputStream inputStream = storage.getInputStream(name, 0, size)) {
+                Files.copy(inputStream, target);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Sizes the file up front (sparse where the filesystem allows it), so every range lands in place.
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            new Download(storage, name, size, channel).run();
+        } catch (Exception e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    private final class Download {
+
+        private final MinioStorageService storage;
+        private final String name;
+        private final long size;
+        private final FileChannel channel;
+
+        private final Queue<Range> ranges = new ConcurrentLinkedQueue<>();
+        private final AtomicLong transferred = new AtomicLong();
+        private final AtomicInteger target = new AtomicInteger();
+        private final AtomicInteger workers = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private volatile Exception failure;
+
+        private Download(MinioStorageService storage, String name, long size, FileChannel channel) {
+            this.storage = storage;
+            this.name = name;
+            this.size = size;
+            this.channel = channel;
+        }
+
+        private void run() throws Exception {
+            for (long offset = 0; offset < size; offset += rangeSize) {
+                ranges.add(new Range(offset, Math.min(rangeSize, size - offset)));
+            }
+            int initial = Math.min(Math.max(learnedConcurrency.get(), minConcurrency), ranges.size());
+            target.set(initial);
+            for (int i = 0; i < initial; i++) {
+                spawn();
+            }
+            try {
+                adapt();
+            } finally {
+                executor.shutdownNow();
+                executor.close();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            learnedConcurrency.set(target.get());
+        }
+
+        // NOTE: Hill climbing on throughput: another range is added while the last step made the download
+        // noticeably faster, and one is dropped again once more parallelism starts to hurt.
+        private void adapt() throws Exception {
+            long lastBytes = 0;
+            double lastThroughput = 0;
+            while (true) {
+                try {
+                    done.get(ADAPT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    // Still downloading.
+                }
+                long bytes = transferred.get();
+                double throughput = (bytes - lastBytes) * 1000.0 / ADAPT_INTERVAL_MILLIS;
+                int current = target.get();
+                if (throughput > lastThroughput * 1.1) {
+                    if (current < maxConcurrency && !ranges.isEmpty()) {
+                        target.incrementAndGet();
+                        spawn();
+                    }
+                } else if (throughput < lastThroughput * 0.9 && current > minConcurrency) {
+                    target.decrementAndGet();
+                }
+                lastBytes = bytes;
+                lastThroughput = throughput;
+            }
+        }
+
+        private void spawn() {
+            workers.incrementAndGet();
+            executor.execute(this::work);
+        }
+
+        private void work() {
+            // One direct buffer per worker: positional writes from it need no extra copy into native memory.
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            try {
+                while (failure == null) {
+                    int current = workers.get();
+                    if (current > target.get() && workers.compareAndSet(current, current - 1)) {
+                        return;
+                    }
+                    Range range = ranges.poll();
+                    if (range == null) {
+                        break;
+                    }
+                    fetch(range, buffer);
+                }
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                ranges.clear();
+            }
+            if (workers.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+
+        // Retries resume from the last byte written, so a dropped connection only costs the rest of its range.
+        private void fetch(Range range, ByteBuffer buffer) throws Exception {
+            long written = 0;
+            int attempt = 0;
+            while (written < range.length()) {
+                try (InputStream inputStream = storage.getInputStream(name, range.offset() + written,
+                        range.length() - written);
+                        ReadableByteChannel source = Channels.newChannel(inputStream)) {
+                    while (written < range.length()) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), range.length() - written));
+                        int read = source.read(buffer);
+                        if (read < 0) {
+                            throw new EOFException("Range at " + range.offset() + " of " + name + " ended early");
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            written += channel.write(buffer, range.offset() + written);
+                        }
+                        transferred.addAndGet(read);
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (++attempt > maxRetries || failure != null) {
+                        throw e;
+                    }
+                    retries.increment();
+                    log.warn("Range at {} of {} failed (attempt {}), retrying", range.offset(), name, attempt, e);
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                }
+            }
+        }
+
+    }
+
+    private record Range(long offset, long length) {
+    }
+
+}
@@ -1,30 +1,44 @@
 package com.dark.videostreaming.transcoding.service.impl;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import com.dark.videostreaming.transcoding.config.MinioConfig;
 import com.dark.videostreaming.transcoding.event.Event;
 import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
 import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.media.PreviewCommandPlanner;
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.ArtifactCacheService;
+import com.dark.videostreaming.transcoding.service.ArtifactDedupService;
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.CheckpointService;
+import com.dark.videostreaming.transcoding.service.FfmpegException;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.JobCheckpoint;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
 import com.dark.videostreaming.transcoding.service.PreviewGeneratorService;
 import com.dark.videostreaming.transcoding.service.PreviewStorageService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
 import com.dark.videostreaming.transcoding.service.VideoStorageService;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
 
-import org.apache.commons.io.FileUtils;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.apache.commons.io.input.TeeInputStream;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
@@ -34,133 +48,158 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Service
 public class PreviewGeneratorServiceImpl implements PreviewGeneratorService {
+    private static final String PIPELINE = "preview";
+
     private final VideoStorageService videoStorageService;
     private final PreviewStorageService previewStorageService;
-    private final KafkaTemplate<String, Event<?>> kafkaTemplate;
-
-    private final Path temp = Paths.get(System.getProperty("user.dir")).resolve("tmp");
+    private final StatusPublisher statusPublisher;
+    private final TranscodingScheduler transcodingScheduler;
+    private final SourceInputService sourceInputService;
+    private final ArtifactCacheService artifactCacheService;
+    private final ArtifactDedupService artifactDedupService;
+    private final PipelineMetrics pipelineMetrics;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final AdmissionController admissionController;
+    private final CheckpointService checkpointService;
 
-    @Async
     @Override
-    public void generatePreview(VideoUploadedEvent event) {
-        generateAndStorePreview(event.videoId(), event.fileName(), event.fileSize());
+    public CompletableFuture<Void> generatePreview(VideoUploadedEvent event) {
+        return transcodingScheduler.submit("preview-" + event.videoId(),
+                admissionController.estimate("preview", videoStorageService, event.fileName(), event.fileSize()),
+                () -> generateAndStorePreview(event.videoId(), event.fileName()));
     }
 
-    private void generateAndStorePreview(long videoId, String filename, long filesize) {
-        try {
-            PreviewUpdateEvent updateEvent = PreviewUpdateEvent.builder().videoId(videoId).status("processing").build();
-            kafkaTemplate.send("video.preview.events",
-                    new Event<PreviewUpdateEvent>("PreviewUpdateEvent", "1.0", Instant.now(), updateEvent));
-            if (Files.notExists(temp, LinkOption.NOFOLLOW_LINKS))
-                Files.createDirectory(temp);
-            Path tempInput = temp.resolve(filename + ".mp4");
-            if (Files.notExists(tempInput, LinkOption.NOFOLLOW_LINKS))
-                Files.createFile(tempInput);
-            try (InputStream is = videoStorageService.getInputStream(filename, 0,
-                    filesize);
-                    OutputStream os = Files.newOutputStream(tempInput, StandardOpenOption.TRUNCATE_EXISTING)) {
-                is.transferTo(os);
+    private void generateAndStorePreview(long videoId, String filename) {
+        try (JobWorkspace workspace = transcodingScheduler.openWorkspace("preview-" + videoId)) {
+            ObjectInfo object = videoStorageService.stat(filename);
+            String contentKey = artifactDedupService.contentKey(object, PreviewCommandPlanner.PROFILE);
+            String previewFilename = contentKey + "_preview.mp4";
+            Optional<StoredArtifact> existing = artifactDedupService.find(previewStorageService, contentKey,
+                    previewFilename);
+            if (existing.isPresent()) {
+                log.info("Video {} already has preview {}, skipping the encode", videoId, existing.get().name());
+                publishReady(videoId, existing.get());
+                return;
             }
-            double duration = getVideoDuration(tempInput.toFile().getAbsolutePath());
-            Path tempDir = temp.resolve("gen");
-            if (Files.notExists(tempDir, LinkOption.NOFOLLOW_LINKS))
-                Files.createDirectory(tempDir);
-            try {
-                generateVideoClips(tempInput.toString(), tempDir.toString(), duration);
-                createConcatList(tempDir);
 
+            // NOTE: The encode streams straight into the upload, so the stored object, found above through its
+            // dedup metadata, is the checkpoint for both; the local one adds the retries and the recorded size.
+            try (JobCheckpoint checkpoint = checkpointService.open("preview-" + videoId, object.etag())) {
+                publish(PreviewUpdateEvent.builder().videoId(videoId).status("processing").build(), Instant.now());
+                MediaSource source = checkpoint.attempt("source",
+                        () -> sourceInputService.open(PIPELINE, videoStorageService, object, workspace));
+                double duration = source.info().duration();
+                String codec = source.info().videoCodec();
+                Path tempDir = Files.createDirectory(workspace.resolve("gen"));
                 Path outputPreview = tempDir.resolve("generated_preview.mp4");
-
-                concatClips(tempDir.toString(), outputPreview.toString());
-                long size = outputPreview.toFile().length();
-                try (InputStream inputStream = Files.newInputStream(outputPreview)) {
-                    Instant instant = Instant.now();
-                    String previewFilename = filename + "_preview_" + instant;
-                    updateEvent.setName(previewFilename);
-                    updateEvent.setSize(size);
-                    updateEvent.setCreatedAt(instant);
-                    updateEvent.setStatus("ready");
-                    previewStorageService.save(inputStream, previewFilename, size);
-                    kafkaTemplate.send("video.preview.events",
-                            new Event<PreviewUpdateEvent>("PreviewUpdateEvent", "1.0", instant, updateEvent));
+                Map<String, String> metadata = artifactDedupService.metadata(contentKey);
+                checkpoint.stage("encode", () -> checkpoint.put("size", String.valueOf(transcodingScheduler.runEncode(
+                        () -> generateAndUploadPreview(source, codec, duration, tempDir, previewFilename, outputPreview,
+                                metadata)))));
+                // The thumbnail stage is triggered by the event below and usually lands on this node.
+                if (Files.exists(outputPreview)) {
+                    artifactCacheService.put(MinioConfig.PREVIEW_BUCKET_NAME, previewFilename,
+                            previewStorageService.stat(previewFilename).etag(), outputPreview);
                 }
-            } finally {
-                FileUtils.deleteDirectory(tempDir.toFile());
-                Files.deleteIfExists(tempInput);
-                FileUtils.deleteDirectory(temp.toFile());
+                StoredArtifact preview = new StoredArtifact(previewFilename, Long.parseLong(checkpoint.get("size")),
+                        Instant.now());
+                artifactDedupService.record(contentKey, preview);
+                publishReady(videoId, preview);
             }
-        } catch (IOException e) {
-            log.warn("Failed to completely delete temp dir, but ignoring.", e);
+        } catch (CheckpointLockedException e) {
+            log.info("Job {} is already running, skipping the duplicate", e.getJobKey());
         } catch (Exception e) {
             PreviewUpdateEvent failedPreviewEvent = PreviewUpdateEvent.builder()
                     .videoId(videoId)
                     .status("failed")
                     .build();
-            kafkaTemplate.send("video.preview.events", new Event<PreviewUpdateEvent>("PreviewUpdateEvent", "1.0",
-                    Instant.now(), failedPreviewEvent));
+            publish(failedPreviewEvent, Instant.now());
             throw new RuntimeException("Failed to create Preview: ", e);
         }
     }
 
-    private double getVideoDuration(String filePath) throws IOException, InterruptedException {
+    private void publishReady(long videoId, StoredArtifact preview) {
+        publish(PreviewUpdateEvent.builder()
+                .videoId(videoId)
+                .name(preview.name())
+                .size(preview.size())
+                .createdAt(preview.createdAt())
+                .status("ready")
+                .build(), Instant.now());
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffprobe",
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                filePath);
-        Process process = processBuilder.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String durationStr = reader.readLine();
-            process.waitFor();
+    private void publish(PreviewUpdateEvent updateEvent, Instant timestamp) {
+        statusPublisher.publish("video.preview.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<PreviewUpdateEvent>("PreviewUpdateEvent", "1.0", timestamp, updateEvent));
+    }
 
-            if (durationStr == null || durationStr.isBlank()) {
+    private List<Double> getKeyframes(MediaSource source, List<Double> startTimes) throws Exception {
+        return ffmpegSupervisor.readStdout("preview-keyframes",
+                PreviewCommandPlanner.keyframeProbeCommand(source, startTimes), stdout -> {
+                    List<Double> keyframes = new ArrayList<>();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(stdout));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        // Lines look like "12.345000,K__"; only packets flagged K start a GOP.
+                        String[] fields = line.split(",");
+                        if (fields.length >= 2 && fields[1].startsWith("K") && !"N/A".equals(fields[0])) {
+                            keyframes.add(Double.parseDouble(fields[0]));
+                        }
+                    }
+                    return keyframes;
+                });
+    }
 
-                BufferedReader bf = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                log.error("Couldn't figure out Duration of the Video: {}", bf.readLine());
-                throw new RuntimeException("Unable to read Duration");
+    private long generateAndUploadPreview(MediaSource source, String codec, double duration, Path dir, String name,
+            Path localCopy, Map<String, String> metadata) throws Exception {
+        List<Double> startTimes = PreviewCommandPlanner.clipStarts(duration);
+        double mediaSeconds = startTimes.size() * PreviewCommandPlanner.CLIP_LENGTH;
+        if (PreviewCommandPlanner.canStreamCopy(codec)) {
+            List<Double> keyframes = pipelineMetrics.time(PIPELINE, "keyframes",
+                    () -> getKeyframes(source, startTimes));
+            List<Double> inpoints = PreviewCommandPlanner.alignToKeyframes(startTimes, keyframes);
+            if (inpoints != null) {
+                Path listPath = dir.resolve("filelist.txt");
+                Files.writeString(listPath, PreviewCommandPlanner.concatList(source, inpoints));
+                try {
+                    return uploadFromProcess(PreviewCommandPlanner.streamCopyCommand(listPath.toString(), codec,
+                            PreviewCommandPlanner.PIPE_OUTPUT), name, localCopy, metadata, mediaSeconds);
+                } catch (IOException e) {
+                    log.warn("Stream copy of the preview failed, re-encoding instead", e);
+                }
             }
-            return Double.parseDouble(durationStr);
         }
+        return uploadFromProcess(PreviewCommandPlanner.encodeCommand(source, startTimes,
+                PreviewCommandPlanner.PIPE_OUTPUT), name, localCopy, metadata, mediaSeconds);
     }
 
-    private void generateVideoClips(String input, String outputDir, double duration) throws Exception {
-        int clipLength = 5;
-        List<Double> startTimes = List.of(duration * 0.25, duration * 0.5, duration * 0.75);
-        for (int i = 0; i < startTimes.size(); i++) {
-            String output = outputDir + "/clip" + i + ".mp4";
-            List<String> command = List.of(
-                    "ffmpeg",
-                    "-ss", String.format(Locale.US, "%.2f", startTimes.get(i)),
-                    "-i", input,
-                    "-t", String.valueOf(clipLength),
-                    "-c:v", "libx264",
-                    "-an",
-                    "-preset", "ultrafast",
-                    output);
-            new ProcessBuilder(command).inheritIO().start().waitFor();
-        }
+    // NOTE: The upload reads ffmpeg's stdout, so encode and upload share one wall time and one timer.
+    private long uploadFromProcess(List<String> command, String name, Path localCopy, Map<String, String> metadata,
+            double mediaSeconds) throws Exception {
+        long start = System.nanoTime();
+        long size = pipelineMetrics.time(PIPELINE, "encode",
+                () -> encodeAndUpload(command, name, localCopy, metadata));
+        long elapsed = System.nanoTime() - start;
+        pipelineMetrics.transferred(PIPELINE, "upload", size, elapsed);
+        pipelineMetrics.encoded(PIPELINE, mediaSeconds, elapsed);
+        return size;
     }
 
-    private void createConcatList(Path dir) throws IOException {
-        Path listPath = dir.resolve("filelist.txt");
-        try (BufferedWriter writer = Files.newBufferedWriter(listPath)) {
-            for (int i = 0; i < 3; i++) {
-                writer.write("file 'clip" + i + ".mp4'\n");
-            }
+    // Uploads ffmpeg's stdout while it is still encoding, keeping a local copy for the artifact cache on the way.
+    private long encodeAndUpload(List<String> command, String name, Path localCopy, Map<String, String> metadata)
+            throws Exception {
+        try {
+            return ffmpegSupervisor.readStdout("preview-encode", command, stdout -> {
+                try (InputStream inputStream = new TeeInputStream(stdout, Files.newOutputStream(localCopy), true)) {
+                    return previewStorageService.save(inputStream, name, metadata);
+                }
+            });
+        } catch (FfmpegException e) {
+            // The upload only saw a truncated stream, don't leave it behind as if it were a preview.
+            previewStorageService.delete(name);
+            Files.deleteIfExists(localCopy);
+            throw e;
         }
     }
 
-    private void concatClips(String dir, String outputFile) throws Exception {
-        List<String> command = List.of(
-                "ffmpeg",
-                "-f", "concat",
-                "-safe", "0",
-                "-i", dir + "/filelist.txt",
-                "-c", "copy",
-                outputFile);
-        new ProcessBuilder(command).inheritIO().start().waitFor();
-    }
-
 }
@@ -1,57 +1,21 @@
 package com.dark.videostreaming.transcoding.service.impl;
 
+import com.dark.videostreaming.transcoding.config.MinioBuckets;
 import com.dark.videostreaming.transcoding.config.MinioConfig;
+import com.dark.videostreaming.transcoding.service.ParallelDownloadService;
 import com.dark.videostreaming.transcoding.service.PreviewStorageService;
-import io.minio.GetObjectArgs;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.RemoveObjectArgs;
-import lombok.RequiredArgsConstructor;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.io.InputStream;
-
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
 @Service
-public class PreviewStorageServiceImpl implements PreviewStorageService {
-    
-    private final MinioClient client;
-    
-    @Value("${minio.object-part-size}")
-    private Long objectPartSize;
-    
-    @Override
-    public void save(InputStream file, String name, long size) throws Exception {
-        client.putObject(
-                PutObjectArgs.builder()
-                        .bucket(MinioConfig.PREVIEW_BUCKET_NAME)
-                        .object(name)
-                        .stream(file, size, objectPartSize)
-                        .build()
-        );
-    }
+public class PreviewStorageServiceImpl extends AbstractMinioStorageService implements PreviewStorageService {
 
-    @Override
-    public void delete(String name) throws Exception {
-        client.removeObject(
-                RemoveObjectArgs.builder()
-                        .bucket(MinioConfig.PREVIEW_BUCKET_NAME)
-                        .object(name)
-                        .build()
-        );
+    public PreviewStorageServiceImpl(MinioBuckets buckets, @Value("${minio.object-part-size}") long objectPartSize,
+            ParallelDownloadService parallelDownloadService) {
+        super(buckets, objectPartSize, MinioConfig.PREVIEW_BUCKET_NAME, parallelDownloadService);
     }
 
-    @Override
-    public InputStream getInputStream(String name, long offset, long length) throws Exception {
-        return client.getObject(
-                GetObjectArgs.builder()
-                        .bucket(MinioConfig.PREVIEW_BUCKET_NAME)
-                        .object(name)
-                        .offset(offset)
-                        .length(length)
-                        .build()
-        );
-    }
-    
 }
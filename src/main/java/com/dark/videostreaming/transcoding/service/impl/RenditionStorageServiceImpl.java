@@ -0,0 +1,21 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import com.dark.videostreaming.transcoding.config.MinioBuckets;
+import com.dark.videostreaming.transcoding.config.MinioConfig;
+import com.dark.videostreaming.transcoding.service.ParallelDownloadService;
+import com.dark.videostreaming.transcoding.service.RenditionStorageService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
+@Service
+public class RenditionStorageServiceImpl extends AbstractMinioStorageService implements RenditionStorageService {
+
+    public RenditionStorageServiceImpl(MinioBuckets buckets, @Value("${minio.object-part-size}") long objectPartSize,
+            ParallelDownloadService parallelDownloadService) {
+        super(buckets, objectPartSize, MinioConfig.RENDITION_BUCKET_NAME, parallelDownloadService);
+    }
+
+}
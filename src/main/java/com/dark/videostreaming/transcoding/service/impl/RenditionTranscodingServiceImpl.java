@@ -0,0 +1,270 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.model.RenditionUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.media.RenditionCommandPlanner;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.CheckpointService;
+import com.dark.videostreaming.transcoding.service.ChunkedEncodingService;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.JobCheckpoint;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.RenditionStorageService;
+import com.dark.videostreaming.transcoding.service.RenditionTranscodingService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.VideoStorageService;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.Rendition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class RenditionTranscodingServiceImpl implements RenditionTranscodingService {
+
+    private static final String SOURCE_ETAG_METADATA = "source-etag";
+
+    private final VideoStorageService videoStorageService;
+    private final RenditionStorageService renditionStorageService;
+    private final StatusPublisher statusPublisher;
+    private final TranscodingScheduler transcodingScheduler;
+    private final SourceInputService sourceInputService;
+    private final ChunkedEncodingService chunkedEncodingService;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final AdmissionController admissionController;
+    private final CheckpointService checkpointService;
+
+    private final List<Rendition> ladder;
+
+    @Value("${transcoding.renditions.segment-seconds:4}")
+    private int segmentSeconds;
+
+    @Value("${transcoding.renditions.dash-enabled:false}")
+    private boolean dashEnabled;
+
+    @Value("${transcoding.renditions.max-concurrent-uploads:4}")
+    private int maxConcurrentUploads;
+
+    public RenditionTranscodingServiceImpl(VideoStorageService videoStorageService,
+            RenditionStorageService renditionStorageService,
+            StatusPublisher statusPublisher,
+            TranscodingScheduler transcodingScheduler,
+            SourceInputService sourceInputService,
+            ChunkedEncodingService chunkedEncodingService,
+            FfmpegSupervisor ffmpegSupervisor,
+            AdmissionController admissionController,
+            CheckpointService checkpointService,
+            @Value("${transcoding.renditions.ladder}") String ladder) {
+        this.videoStorageService = videoStorageService;
+        this.renditionStorageService = renditionStorageService;
+        this.statusPublisher = statusPublisher;
+        this.transcodingScheduler = transcodingScheduler;
+        this.sourceInputService = sourceInputService;
+        this.chunkedEncodingService = chunkedEncodingService;
+        this.ffmpegSupervisor = ffmpegSupervisor;
+        this.admissionController = admissionController;
+        this.checkpointService = checkpointService;
+        this.ladder = Rendition.parseLadder(ladder);
+    }
+
+    @Override
+    public CompletableFuture<Void> transcode(VideoUploadedEvent event) {
+        return transcodingScheduler.submit("renditions-" + event.videoId(),
+                admissionController.estimate("renditions", videoStorageService, event.fileName(), event.fileSize()),
+                () -> transcodeAndStoreRenditions(event.videoId(), event.fileName()));
+    }
+
+    private void transcodeAndStoreRenditions(long videoId, String filename) {
+        try (JobWorkspace workspace = transcodingScheduler.openWorkspace("renditions-" + videoId)) {
+            ObjectInfo object = videoStorageService.stat(filename);
+            String prefix = videoId + "/";
+            String master = prefix + "hls/" + RenditionCommandPlanner.MASTER_PLAYLIST;
+            String dashManifest = dashEnabled ? prefix + "dash/" + RenditionCommandPlanner.DASH_MANIFEST : null;
+            if (isStored(master, object)) {
+                log.info("Video {} already has renditions of this source, skipping the encode", videoId);
+                sendReady(videoId, master, dashManifest);
+                return;
+            }
+
+            try (JobCheckpoint checkpoint = checkpointService.open("renditions-" + videoId, object.etag())) {
+                sendUpdate(RenditionUpdateEvent.builder().videoId(videoId).status("processing").build());
+                MediaSource source = checkpoint.attempt("source",
+                        () -> sourceInputService.open("rendition", videoStorageService, object, workspace));
+                List<Rendition> renditions = RenditionCommandPlanner.selectLadder(ladder, source.info());
+                Path hlsDir = Files.createDirectories(checkpoint.getDir().resolve("hls"));
+
+                checkpoint.stage("encode", () -> {
+                    // Segments go up while the encoders still run. Anything that fails to upload here is left to the
+                    // upload stage, which doesn't need the encoders again.
+                    try (HlsSegmentUploader uploader = new HlsSegmentUploader(renditionStorageService, hlsDir,
+                            prefix + "hls/", maxConcurrentUploads)) {
+                        uploader.start();
+                        if (chunkedEncodingService.shouldChunk(source.info())) {
+                            AtomicInteger completed = new AtomicInteger();
+                            chunkedEncodingService.encodeHls(source, renditions, segmentSeconds,
+                                    Files.createTempDirectory(workspace.getDir(), "chunked-"), hlsDir,
+                                    rendition -> sendProgress(videoId, rendition, completed.incrementAndGet(),
+                                            renditions.size()));
+                        } else {
+                            encodeRenditions(videoId, source, renditions, hlsDir);
+                        }
+                        try {
+                            uploader.finish();
+                            checkpoint.put("streamed", "true");
+                        } catch (Exception e) {
+                            log.warn("Streaming upload of the renditions of video {} failed", videoId, e);
+                        }
+                    }
+                });
+                checkpoint.stage("upload", () -> {
+                    if (!"true".equals(checkpoint.get("streamed"))) {
+                        upload(hlsDir, prefix + "hls/");
+                    }
+                });
+
+                if (dashEnabled) {
+                    Path dashDir = Files.createDirectories(checkpoint.getDir().resolve("dash"));
+                    checkpoint.stage("dash", () -> {
+                        transcodingScheduler.runEncode(() -> {
+                            ffmpegSupervisor.run("dash-" + videoId, RenditionCommandPlanner.dashCommand(renditions,
+                                    source.info().hasAudio(), hlsDir.toString(), dashDir.toString()), null);
+                            return dashDir;
+                        });
+                        upload(dashDir, prefix + "dash/");
+                    });
+                }
+
+                // NOTE: The master playlist goes up last and names the source it was made from, which makes it the
+                // checkpoint every node can see: once it exists, all the renditions behind it are stored.
+                Path masterPlaylist = hlsDir.resolve(RenditionCommandPlanner.MASTER_PLAYLIST);
+                Files.writeString(masterPlaylist, RenditionCommandPlanner.masterPlaylist(renditions, source.info()));
+                checkpoint.attempt("upload", () -> {
+                    renditionStorageService.save(masterPlaylist, master, Map.of(SOURCE_ETAG_METADATA, object.etag()));
+                    return master;
+                });
+                sendReady(videoId, master, dashManifest);
+            }
+        } catch (CheckpointLockedException e) {
+            log.info("Job {} is already running, skipping the duplicate", e.getJobKey());
+        } catch (Exception e) {
+            sendUpdate(RenditionUpdateEvent.builder().videoId(videoId).status("failed").build());
+            throw new RuntimeException("Failed to create renditions: ", e);
+        }
+    }
+
+    private boolean isStored(String master, ObjectInfo source) {
+        try {
+            return source.etag().equals(renditionStorageService.stat(master).userMetadata().get(SOURCE_ETAG_METADATA));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void sendReady(long videoId, String master, String dashManifest) {
+        sendUpdate(RenditionUpdateEvent.builder()
+                .videoId(videoId)
+                .manifest(master)
+                .dashManifest(dashManifest)
+                .progress(1)
+                .status("ready")
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    private void encodeRenditions(long videoId, MediaSource source, List<Rendition> renditions, Path outputDir)
+            throws Exception {
+        // Every rendition is its own encode slot on the ffmpeg pool; the cores are split evenly between them.
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / renditions.size());
+        double duration = source.info().duration();
+        AtomicLongArray encodedMillis = new AtomicLongArray(renditions.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Rendition>> futures = new ArrayList<>();
+            for (int i = 0; i < renditions.size(); i++) {
+                int index = i;
+                Rendition rendition = renditions.get(i);
+                futures.add(executor.submit(() -> transcodingScheduler.runEncode(() -> {
+                    ffmpegSupervisor.run("hls-" + videoId + "-" + rendition.name(),
+                            RenditionCommandPlanner.hlsCommand(source, rendition, segmentSeconds, threads,
+                                    outputDir.toString()),
+                            progress -> {
+                                encodedMillis.set(index, (long) (progress.outTimeSeconds() * 1000));
+                                sendEncodeProgress(videoId, rendition, encodedMillis, duration);
+                            });
+                    encodedMillis.set(index, (long) (duration * 1000));
+                    sendEncodeProgress(videoId, rendition, encodedMillis, duration);
+                    return rendition;
+                })));
+            }
+            for (Future<Rendition> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private void upload(Path dir, String prefix) throws Exception {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            renditionStorageService.save(file, prefix + dir.relativize(file).toString().replace('\\', '/'));
+        }
+    }
+
+    private void sendProgress(long videoId, Rendition rendition, int completed, int total) {
+        // The last step is the upload, so encoding alone never reports 100%.
+        sendUpdate(RenditionUpdateEvent.builder()
+                .videoId(videoId)
+                .rendition(rendition.name())
+                .progress((double) completed / (total + 1))
+                .status("processing")
+                .build());
+    }
+
+    // Progress of the parallel encodes, from the output time each ffmpeg reports; the status publisher coalesces
+    // the resulting stream of updates.
+    private void sendEncodeProgress(long videoId, Rendition rendition, AtomicLongArray encodedMillis,
+            double duration) {
+        if (duration <= 0) {
+            return;
+        }
+        double encoded = 0;
+        for (int i = 0; i < encodedMillis.length(); i++) {
+            encoded += Math.min(1, encodedMillis.get(i) / 1000.0 / duration);
+        }
+        sendUpdate(RenditionUpdateEvent.builder()
+                .videoId(videoId)
+                .rendition(rendition.name())
+                .progress(encoded / (encodedMillis.length() + 1))
+                .status("processing")
+                .build());
+    }
+
+    private void sendUpdate(RenditionUpdateEvent updateEvent) {
+        statusPublisher.publish("video.rendition.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<RenditionUpdateEvent>("RenditionUpdateEvent", "1.0", Instant.now(), updateEvent));
+    }
+
+}
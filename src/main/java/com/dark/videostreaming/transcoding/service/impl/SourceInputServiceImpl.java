@@ -0,0 +1,92 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.ArtifactCacheService;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.MediaProbeService;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class SourceInputServiceImpl implements SourceInputService {
+
+    private final MediaProbeService mediaProbeService;
+    private final ArtifactCacheService artifactCacheService;
+    private final PipelineMetrics pipelineMetrics;
+    private final AdmissionController admissionController;
+
+    @Value("${transcoding.input.mode:stream}")
+    private String inputMode;
+
+    @Value("${transcoding.input.presign-expiry:3600}")
+    private int presignExpiry;
+
+    @Override
+    public MediaSource open(String pipeline, MinioStorageService storage, ObjectInfo object, JobWorkspace workspace)
+            throws Exception {
+        String name = object.name();
+        Optional<Path> cached = artifactCacheService.get(object.bucket(), name, object.etag(),
+                workspace.resolve(localName(name)));
+        if (cached.isPresent()) {
+            String location = cached.get().toAbsolutePath().toString();
+            return new MediaSource(location, false, probe(pipeline, object, location));
+        }
+        if ("stream".equals(inputMode)) {
+            String url = storage.getPresignedUrl(name, presignExpiry);
+            MediaInfo info = probe(pipeline, object, url);
+            if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                // The local storage backend hands out plain paths, which ffmpeg can read from directly.
+                return new MediaSource(url, false, info);
+            }
+            if (info.seekableRemotely()) {
+                return new MediaSource(url, true, info);
+            }
+            log.info("Container '{}' of {} can't be seeked remotely, downloading it instead", info.formatName(), name);
+        }
+        return download(pipeline, storage, object, workspace);
+    }
+
+    private MediaSource download(String pipeline, MinioStorageService storage, ObjectInfo object,
+            JobWorkspace workspace) throws Exception {
+        Path tempInput = workspace.resolve(localName(object.name()));
+        long start = System.nanoTime();
+        long size = pipelineMetrics.time(pipeline, "download", () -> {
+            storage.download(object.name(), tempInput);
+            return Files.size(tempInput);
+        });
+        pipelineMetrics.transferred(pipeline, "download", size, System.nanoTime() - start);
+        artifactCacheService.put(object.bucket(), object.name(), object.etag(), tempInput);
+        String location = tempInput.toAbsolutePath().toString();
+        return new MediaSource(location, false, probe(pipeline, object, location));
+    }
+
+    // Keeps the source's extension, which some demuxers go by, under a name that can't reach out of the workspace.
+    private static String localName(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash + 1 ? "source" + name.substring(dot) : "source";
+    }
+
+    private MediaInfo probe(String pipeline, ObjectInfo object, String location) throws Exception {
+        MediaInfo info = pipelineMetrics.time(pipeline, "probe", () -> mediaProbeService.probe(object, location));
+        admissionController.observe(object.size(), info);
+        return info;
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import com.dark.videostreaming.transcoding.service.FfmpegException;
+import com.dark.videostreaming.transcoding.service.model.FfmpegProgress;
+
+import lombok.extern.slf4j.Slf4j;
+
+// State of one running ffmpeg/ffprobe process: parses stderr into progress blocks and a tail of log lines, and
+// kills the process tree once it runs past its deadline or its output time stops advancing.
+@Slf4j
+class SupervisedProcess {
+
+    private static final long WATCH_INTERVAL_MILLIS = 1000;
+    // -progress writes "key=value" lines without spaces; ffmpeg's log lines practically always contain some.
+    private static final Pattern PROGRESS_LINE = Pattern.compile("^[a-z0-9_]+=\\S*$");
+
+    private final String name;
+    private final Process process;
+    private final Consumer<FfmpegProgress> onProgress;
+    private final int tailLines;
+
+    private final Deque<String> tail = new ArrayDeque<>();
+    private final Map<String, String> block = new HashMap<>();
+    private volatile long lastAdvance = System.nanoTime();
+    private volatile double outTime = -1;
+    private volatile String killReason;
+
+    SupervisedProcess(String name, Process process, Consumer<FfmpegProgress> onProgress, int tailLines) {
+        this.name = name;
+        this.process = process;
+        this.onProgress = onProgress;
+        this.tailLines = tailLines;
+    }
+
+    void pumpStderr() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (PROGRESS_LINE.matcher(line).matches()) {
+                    progressField(line);
+                } else {
+                    log.debug("[{}] {}", name, line);
+                    synchronized (tail) {
+                        tail.addLast(line);
+                        if (tail.size() > tailLines) {
+                            tail.removeFirst();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("[{}] stderr closed", name, e);
+        }
+    }
+
+    private void progressField(String line) {
+        int separator = line.indexOf('=');
+        String key = line.substring(0, separator);
+        String value = line.substring(separator + 1);
+        if (!"progress".equals(key)) {
+            block.put(key, value);
+            return;
+        }
+        // out_time_ms is in microseconds as well, it is only the fallback for old ffmpeg builds.
+        String outTimeMicros = block.getOrDefault("out_time_us", block.get("out_time_ms"));
+        FfmpegProgress progress = new FfmpegProgress(
+                (long) number(block.get("frame")),
+                number(block.get("fps")),
+                number(outTimeMicros) / 1_000_000,
+                number(block.get("speed")),
+                (long) number(block.get("total_size")),
+                "end".equals(value));
+        block.clear();
+        if (progress.outTimeSeconds() > outTime) {
+            outTime = progress.outTimeSeconds();
+            lastAdvance = System.nanoTime();
+        }
+        if (onProgress != null) {
+            try {
+                onProgress.accept(progress);
+            } catch (RuntimeException e) {
+                log.warn("[{}] Progress listener failed", name, e);
+            }
+        }
+    }
+
+    private static double number(String value) {
+        if (value == null) {
+            return 0;
+        }
+        String trimmed = value.endsWith("x") ? value.substring(0, value.length() - 1) : value;
+        try {
+            return Double.parseDouble(trimmed);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // A null stall timeout disables stall detection, ffprobe doesn't report progress.
+    void watch(Duration timeout, Duration stallTimeout) {
+        long start = System.nanoTime();
+        try {
+            while (process.isAlive()) {
+                Thread.sleep(WATCH_INTERVAL_MILLIS);
+                long now = System.nanoTime();
+                if (now - start > timeout.toNanos()) {
+                    kill("timed out after " + timeout.toSeconds() + "s");
+                } else if (stallTimeout != null && now - lastAdvance > stallTimeout.toNanos()) {
+                    kill("stalled, no progress for " + stallTimeout.toSeconds() + "s");
+                }
+            }
+        } catch (InterruptedException e) {
+            // Supervision ended, the process has exited or is being killed by the caller.
+        }
+    }
+
+    void kill(String reason) {
+        if (killReason == null) {
+            killReason = reason;
+        }
+        if (process.isAlive()) {
+            log.warn("[{}] Killing process {}: {}", name, process.pid(), reason);
+        }
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    String killReason() {
+        return killReason;
+    }
+
+    FfmpegException failure(int exitCode) {
+        List<String> lines;
+        synchronized (tail) {
+            lines = List.copyOf(tail);
+        }
+        String message = killReason != null
+                ? name + " " + killReason
+                : name + " exited with code " + exitCode;
+        return new FfmpegException(message, exitCode, lines);
+    }
+
+}
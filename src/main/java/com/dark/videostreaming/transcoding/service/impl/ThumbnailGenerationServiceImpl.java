@@ -1,29 +1,37 @@
 package com.dark.videostreaming.transcoding.service.impl;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.CompletableFuture;
 
 import com.dark.videostreaming.transcoding.event.Event;
 import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
 import com.dark.videostreaming.transcoding.event.model.ThumbnailUpdateEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.ArtifactDedupService;
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.CheckpointService;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.JobCheckpoint;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
 import com.dark.videostreaming.transcoding.service.PreviewStorageService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
 import com.dark.videostreaming.transcoding.service.ThumbnailGenerationService;
+import com.dark.videostreaming.transcoding.service.ThumbnailSelectionService;
 import com.dark.videostreaming.transcoding.service.ThumbnailStorageService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
 
-import org.apache.commons.io.FileUtils;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
@@ -34,109 +42,134 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class ThumbnailGenerationServiceImpl implements ThumbnailGenerationService {
 
+    private static final String PIPELINE = "thumbnail";
+    private static final int SCAN_LENGTH = 5;
+    // Part of every thumbnail's dedup key; bump it whenever generateThumbnail produces a different image. With
+    // selection on, its settings are part of the key too.
+    private static final String PROFILE = "thumbnail-v1:" + SCAN_LENGTH + ":1/3:thumbnail:png";
+
     private final PreviewStorageService previewStorageService;
     private final ThumbnailStorageService thumbnailStorageService;
-    private final KafkaTemplate<String, Event<?>> kafkaTemplate;
-
-    private final Path temp = Paths.get(System.getProperty("user.dir")).resolve("tmpThumb");
+    private final StatusPublisher statusPublisher;
+    private final TranscodingScheduler transcodingScheduler;
+    private final SourceInputService sourceInputService;
+    private final PipelineMetrics pipelineMetrics;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final AdmissionController admissionController;
+    private final CheckpointService checkpointService;
+    private final ArtifactDedupService artifactDedupService;
+    private final ThumbnailSelectionService thumbnailSelectionService;
 
-    @Async
     @Override
-    public void generateThumbnail(PreviewUpdateEvent event) {
-        generateAndStoreThumbnail(event.getVideoId(), event.getName(), event.getSize());
+    public CompletableFuture<Void> generateThumbnail(PreviewUpdateEvent event) {
+        return transcodingScheduler.submit("thumbnail-" + event.getVideoId(),
+                admissionController.estimate("thumbnail", previewStorageService, event.getName(), event.getSize()),
+                () -> generateAndStoreThumbnail(event.getVideoId(), event.getName()));
     }
 
-    private void generateAndStoreThumbnail(long videoId, String filename, long filesize) {
-        try {
-            ThumbnailUpdateEvent updatedEvent = ThumbnailUpdateEvent.builder().videoId(videoId).status("processing")
-                    .build();
-            kafkaTemplate.send("video.thumbnail.events",
-                    new Event<ThumbnailUpdateEvent>("ThumbnailUpdateEvent", "1.0", Instant.now(), updatedEvent));
-            if (Files.notExists(temp, LinkOption.NOFOLLOW_LINKS))
-                Files.createDirectory(temp);
-            Path tempInput = temp.resolve(filename + ".mp4");
-            if (Files.notExists(tempInput, LinkOption.NOFOLLOW_LINKS))
-                Files.createFile(tempInput);
-            try (InputStream is = previewStorageService.getInputStream(filename, 0,
-                    filesize);
-                    OutputStream os = Files.newOutputStream(tempInput, StandardOpenOption.TRUNCATE_EXISTING)) {
-                is.transferTo(os);
+    private void generateAndStoreThumbnail(long videoId, String filename) {
+        try (JobWorkspace workspace = transcodingScheduler.openWorkspace("thumbnail-" + videoId)) {
+            ObjectInfo object = previewStorageService.stat(filename);
+            String contentKey = artifactDedupService.contentKey(object, profile());
+            String thumbnailName = contentKey + "_thumbnail.png";
+            Optional<StoredArtifact> existing = artifactDedupService.find(thumbnailStorageService, contentKey,
+                    thumbnailName);
+            if (existing.isPresent()) {
+                log.info("Video {} already has thumbnail {}, skipping the encode", videoId, existing.get().name());
+                publishReady(videoId, existing.get());
+                return;
             }
-            double duration = getVideoDuration(tempInput.toFile().getAbsolutePath());
-            Path tempDir = temp.resolve("gen");
-            if (Files.notExists(tempDir, LinkOption.NOFOLLOW_LINKS))
-                Files.createDirectory(tempDir);
-            try {
-                Path output = tempDir.resolve("thumbnail.png");
-                generateThumbnail(tempInput.toString(), output.toString(), duration);
-
-                long size = output.toFile().length();
-                try (InputStream inputStream = Files.newInputStream(output)) {
-                    Instant instant = Instant.now();
-                    String thumbnailName = filename + "_thumbnail_" + instant;
-                    thumbnailStorageService.save(inputStream, thumbnailName, size);
-                    updatedEvent.setName(thumbnailName);
-                    updatedEvent.setCreatedAt(instant);
-                    updatedEvent.setSize(size);
-                    updatedEvent.setStatus("ready");
-                    kafkaTemplate.send("video.thumbnail.events",
-                            new Event<ThumbnailUpdateEvent>("ThumbnailUpdateEvent", "1.0", instant, updatedEvent));
-                }
-            } finally {
-                FileUtils.deleteDirectory(tempDir.toFile());
-                Files.deleteIfExists(tempInput);
-                FileUtils.deleteDirectory(temp.toFile());
+
+            // The image is kept with the checkpoint, so a failed upload doesn't cost another download and encode.
+            try (JobCheckpoint checkpoint = checkpointService.open("thumbnail-" + videoId, object.etag())) {
+                publish(ThumbnailUpdateEvent.builder().videoId(videoId).status("processing").build(), Instant.now());
+                Path output = checkpoint.getDir().resolve("thumbnail.png");
+                checkpoint.stage("encode", () -> {
+                    MediaSource source = checkpoint.attempt("source",
+                            () -> sourceInputService.open(PIPELINE, previewStorageService, object, workspace));
+                    double duration = source.info().duration();
+                    transcodingScheduler.runEncode(() -> {
+                        long start = System.nanoTime();
+                        double decoded = pipelineMetrics.time(PIPELINE, "encode",
+                                () -> createThumbnail(videoId, source, output, duration));
+                        pipelineMetrics.encoded(PIPELINE, decoded, System.nanoTime() - start);
+                        return output;
+                    });
+                });
+
+                long size = Files.size(output);
+                checkpoint.stage("upload", () -> {
+                    long uploadStart = System.nanoTime();
+                    pipelineMetrics.time(PIPELINE, "upload", () -> {
+                        thumbnailStorageService.save(output, thumbnailName, artifactDedupService.metadata(contentKey));
+                        return size;
+                    });
+                    pipelineMetrics.transferred(PIPELINE, "upload", size, System.nanoTime() - uploadStart);
+                });
+                StoredArtifact thumbnail = new StoredArtifact(thumbnailName, size, Instant.now());
+                artifactDedupService.record(contentKey, thumbnail);
+                publishReady(videoId, thumbnail);
             }
-        } catch (IOException e) {
-            log.warn("Failed to completely delete temp dir, but ignoring.", e);
+        } catch (CheckpointLockedException e) {
+            log.info("Job {} is already running, skipping the duplicate", e.getJobKey());
         } catch (Exception e) {
-
             ThumbnailUpdateEvent failedThumbnailEvent = ThumbnailUpdateEvent.builder()
                     .videoId(videoId)
                     .status("failed")
                     .build();
-            kafkaTemplate.send("video.thumbnail.events", new Event<ThumbnailUpdateEvent>("ThumbnailUpdateEvent", "1.0",
-                    Instant.now(), failedThumbnailEvent));
+            publish(failedThumbnailEvent, Instant.now());
             throw new RuntimeException("Failed to create thumbnail: ", e);
         }
     }
 
-    private double getVideoDuration(String filePath) throws IOException, InterruptedException {
+    private void publishReady(long videoId, StoredArtifact thumbnail) {
+        publish(ThumbnailUpdateEvent.builder()
+                .videoId(videoId)
+                .name(thumbnail.name())
+                .createdAt(thumbnail.createdAt())
+                .size(thumbnail.size())
+                .status("ready")
+                .build(), Instant.now());
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffprobe",
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                filePath);
-        Process process = processBuilder.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String durationStr = reader.readLine();
-            process.waitFor();
+    private void publish(ThumbnailUpdateEvent updateEvent, Instant timestamp) {
+        statusPublisher.publish("video.thumbnail.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<ThumbnailUpdateEvent>("ThumbnailUpdateEvent", "1.0", timestamp, updateEvent));
+    }
 
-            if (durationStr == null || durationStr.isBlank()) {
+    private String profile() {
+        return thumbnailSelectionService.isEnabled() ? PROFILE + ":" + thumbnailSelectionService.profile() : PROFILE;
+    }
 
-                BufferedReader bf = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                log.error("Couldn't figure out Duration of the Video: {}", bf.readLine());
-                throw new RuntimeException("Unable to read Duration");
+    // Scores candidates from the whole source when selection is on; the thumbnail filter over a few seconds is the
+    // fallback when none of them is usable. Returns the media seconds that were sampled or scanned.
+    private double createThumbnail(long videoId, MediaSource source, Path output, double duration) throws Exception {
+        double sampled = 0;
+        if (thumbnailSelectionService.isEnabled()) {
+            OptionalDouble timestamp = pipelineMetrics.time(PIPELINE, "select",
+                    () -> thumbnailSelectionService.select("thumbnail-select-" + videoId, source));
+            sampled = thumbnailSelectionService.sampledSeconds(duration);
+            if (timestamp.isPresent()) {
+                thumbnailSelectionService.extract("thumbnail-extract-" + videoId, source, timestamp.getAsDouble(),
+                        output);
+                return sampled;
             }
-            return Double.parseDouble(durationStr);
+            log.info("No candidate frame of video {} is usable as a poster, using the thumbnail filter", videoId);
         }
+        generateThumbnail(source, output.toString(), duration);
+        return sampled + Math.min(SCAN_LENGTH, duration);
     }
 
-    private void generateThumbnail(String input, String output, double duration) throws Exception {
+    private void generateThumbnail(MediaSource source, String output, double duration) throws Exception {
         String startStamp = String.format(Locale.US, "%.2f", duration / 3);
-        int scanLength = 5;
-        List<String> command = List.of(
-                "ffmpeg",
-                "-ss", startStamp,
-                "-i", input,
-                "-t", String.valueOf(scanLength),
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-ss", startStamp));
+        command.addAll(source.inputArgs());
+        command.addAll(List.of(
+                "-t", String.valueOf(SCAN_LENGTH),
                 "-vf", "thumbnail",
                 "-frames:v", "1",
                 "-an",
-                "-preset", "ultrafast",
-                output);
-        new ProcessBuilder(command).inheritIO().start().waitFor();
+                output));
+        ffmpegSupervisor.run("thumbnail", command, null);
     }
 }
@@ -0,0 +1,161 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dark.videostreaming.transcoding.media.FrameScorer;
+import com.dark.videostreaming.transcoding.media.ThumbnailCommandPlanner;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.ThumbnailSelectionService;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class ThumbnailSelectionServiceImpl implements ThumbnailSelectionService {
+
+    // Candidates come from this part of the source, away from intros, black leaders and end credits.
+    private static final double WINDOW_START = 0.05;
+    private static final double WINDOW_END = 0.95;
+
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final boolean enabled;
+    private final int candidates;
+    private final double minInterval;
+    private final int width;
+    private final int height;
+    private final boolean keyframesOnly;
+
+    // NOTE: Frames are read into direct buffers that are handed back once scored, so a selection allocates no
+    // pixel memory and the reader waits for the scorers instead of queueing the whole source on the heap.
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final ExecutorService scoringExecutor;
+
+    public ThumbnailSelectionServiceImpl(FfmpegSupervisor ffmpegSupervisor,
+            @Value("${transcoding.thumbnail.selection.enabled:true}") boolean enabled,
+            @Value("${transcoding.thumbnail.selection.candidates:60}") int candidates,
+            @Value("${transcoding.thumbnail.selection.min-interval:1}") double minInterval,
+            @Value("${transcoding.thumbnail.selection.width:160}") int width,
+            @Value("${transcoding.thumbnail.selection.height:90}") int height,
+            @Value("${transcoding.thumbnail.selection.keyframes-only:true}") boolean keyframesOnly,
+            @Value("${transcoding.thumbnail.selection.scoring-threads:0}") int scoringThreads) {
+        this.ffmpegSupervisor = ffmpegSupervisor;
+        this.enabled = enabled;
+        this.candidates = Math.max(1, candidates);
+        this.minInterval = minInterval;
+        this.width = width;
+        this.height = height;
+        this.keyframesOnly = keyframesOnly;
+
+        int threads = scoringThreads > 0 ? scoringThreads
+                : Math.min(4, Runtime.getRuntime().availableProcessors());
+        this.buffers = new ArrayBlockingQueue<>(threads * 2);
+        for (int i = 0; i < threads * 2; i++) {
+            buffers.add(ByteBuffer.allocateDirect(width * height));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scoringExecutor = Executors.newFixedThreadPool(threads, runnable -> Thread.ofPlatform()
+                .name("frame-scorer-" + threadCount.getAndIncrement())
+                .daemon(true)
+                .unstarted(runnable));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String profile() {
+        return "scored-v1:" + candidates + ":" + minInterval + ":" + width + "x" + height + ":" + keyframesOnly;
+    }
+
+    @Override
+    public double sampledSeconds(double duration) {
+        return Math.max(0, duration) * (WINDOW_END - WINDOW_START);
+    }
+
+    @Override
+    public OptionalDouble select(String name, MediaSource source) throws Exception {
+        double duration = source.info().duration();
+        if (duration <= 0) {
+            return OptionalDouble.empty();
+        }
+        double start = duration * WINDOW_START;
+        double length = sampledSeconds(duration);
+        double interval = Math.max(minInterval, length / candidates);
+        List<FrameScorer.Score> scores = ffmpegSupervisor.readStdout(name,
+                ThumbnailCommandPlanner.sampleCommand(source, start, length, interval, width, height,
+                        keyframesOnly),
+                this::scoreFrames);
+        int best = FrameScorer.best(scores);
+        log.debug("Scored {} candidate frames for {}, picked {}", scores.size(), name, best);
+        return best < 0 ? OptionalDouble.empty() : OptionalDouble.of(Math.min(duration, start + best * interval));
+    }
+
+    @Override
+    public void extract(String name, MediaSource source, double timestamp, Path output) throws Exception {
+        ffmpegSupervisor.run(name, ThumbnailCommandPlanner.extractCommand(source, timestamp, keyframesOnly,
+                output.toString()), null);
+    }
+
+    // Reads frame after frame while earlier ones are still being scored; the scores keep the sampling order.
+    private List<FrameScorer.Score> scoreFrames(InputStream stdout) throws Exception {
+        ReadableByteChannel channel = Channels.newChannel(stdout);
+        List<CompletableFuture<FrameScorer.Score>> scores = new ArrayList<>();
+        try {
+            while (true) {
+                ByteBuffer frame = buffers.take();
+                frame.clear();
+                if (!readFully(channel, frame)) {
+                    buffers.add(frame);
+                    break;
+                }
+                scores.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return FrameScorer.score(frame, width, height);
+                    } finally {
+                        buffers.add(frame);
+                    }
+                }, scoringExecutor));
+            }
+            return scores.stream().map(CompletableFuture::join).toList();
+        } finally {
+            // Buffers still with the scorers only go back once their frame is done.
+            CompletableFuture.allOf(scores.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        }
+    }
+
+    // False at the end of the stream; a trailing partial frame is dropped.
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer frame) throws Exception {
+        while (frame.hasRemaining()) {
+            if (channel.read(frame) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scoringExecutor.shutdownNow();
+    }
+
+}
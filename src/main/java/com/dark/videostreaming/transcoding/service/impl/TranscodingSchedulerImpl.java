@@ -0,0 +1,216 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.WorkspaceManager;
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+import com.sun.management.OperatingSystemMXBean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class TranscodingSchedulerImpl implements TranscodingScheduler {
+
+    // The cost of the job running on the current thread, for the workspace it opens.
+    private static final ThreadLocal<JobCost> CURRENT_COST = new ThreadLocal<>();
+
+    private final WorkspaceManager workspaceManager;
+    private final int maxQueuedJobs;
+
+    // Guarded by this.
+    private final AdmissionQueue<PendingJob> pending;
+
+    // NOTE: Jobs spend most of their time waiting on MinIO, Kafka or a child process, so they get a virtual
+    // thread each. Only the ffmpeg stage is CPU bound and goes through the bounded platform pool below.
+    private final ExecutorService jobExecutor = Executors
+            .newThreadPerTaskExecutor(Thread.ofVirtual().name("transcoding-job-", 0).factory());
+    private final ThreadPoolExecutor ffmpegExecutor;
+
+    public TranscodingSchedulerImpl(WorkspaceManager workspaceManager,
+            @Value("${transcoding.scheduler.ffmpeg-workers:0}") int ffmpegWorkers,
+            @Value("${transcoding.scheduler.max-concurrent-jobs:0}") int maxConcurrentJobs,
+            @Value("${transcoding.scheduler.max-queued-jobs:0}") int maxQueuedJobs,
+            @Value("${transcoding.admission.lane-limits:120,1800}") double[] laneLimits,
+            @Value("${transcoding.admission.download-rate:52428800}") double downloadRate,
+            @Value("${transcoding.admission.lane-weights:8,3,1}") int[] laneWeights,
+            @Value("${transcoding.admission.max-wait:10m}") Duration maxWait,
+            @Value("${transcoding.admission.cpu-budget:0}") long cpuBudget,
+            @Value("${transcoding.admission.disk-budget:0}") long diskBudget,
+            @Value("${transcoding.admission.memory-budget:0}") long memoryBudget) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // ffmpeg is multi-threaded on its own, so by default only half the cores get a dedicated encode slot.
+        int workers = ffmpegWorkers > 0 ? ffmpegWorkers : Math.max(1, cores / 2);
+        int maxJobs = maxConcurrentJobs > 0 ? maxConcurrentJobs : workers * 4;
+        this.maxQueuedJobs = maxQueuedJobs > 0 ? maxQueuedJobs : maxJobs;
+
+        // Unset budgets come from the node: the job slots for CPU, the workspace quota for disk and most of the
+        // physical memory for the ffmpeg processes.
+        long cpu = cpuBudget > 0 ? cpuBudget : maxJobs;
+        long disk = diskBudget > 0 ? diskBudget : workspaceManager.diskQuota();
+        long memory = memoryBudget > 0 ? memoryBudget
+                : ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getTotalMemorySize() / 4 * 3;
+        this.pending = new AdmissionQueue<>(laneLimits, downloadRate, laneWeights, maxWait.toNanos(), maxJobs, cpu,
+                disk, workspaceManager::usedBytes, memory);
+        this.workspaceManager = workspaceManager;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.ffmpegExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> Thread.ofPlatform()
+                        .name("ffmpeg-worker-" + threadCount.getAndIncrement())
+                        .daemon(true)
+                        .unstarted(runnable));
+        log.info("Transcoding scheduler started with {} ffmpeg workers, {} concurrent jobs and lanes {} weighted {}",
+                workers, maxJobs, Arrays.toString(laneLimits), Arrays.toString(laneWeights));
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(String jobName, JobCost cost, Runnable job) {
+        PendingJob pendingJob = new PendingJob(jobName, cost, job, new CompletableFuture<>());
+        List<PendingJob> ready;
+        synchronized (this) {
+            // NOTE: Never blocks, the Kafka listeners are paused through hasCapacity() instead. Blocking a
+            // listener thread past max.poll.interval.ms would get its consumer kicked out of the group.
+            pending.add(pendingJob, cost);
+            ready = admit();
+        }
+        ready.forEach(this::start);
+        return pendingJob.completion();
+    }
+
+    private void start(PendingJob pendingJob) {
+        try {
+            jobExecutor.execute(() -> run(pendingJob));
+        } catch (RejectedExecutionException e) {
+            // Shutting down. The job was admitted, so its slot and budgets go back, but nothing else is started.
+            synchronized (this) {
+                pending.release(pendingJob.cost());
+            }
+            pendingJob.completion().completeExceptionally(e);
+        }
+    }
+
+    private void run(PendingJob pendingJob) {
+        Throwable failure = null;
+        CURRENT_COST.set(pendingJob.cost());
+        try {
+            pendingJob.job().run();
+        } catch (Throwable e) {
+            log.error("Job {} failed", pendingJob.name(), e);
+            failure = e;
+        } finally {
+            CURRENT_COST.remove();
+        }
+        finish(pendingJob);
+        if (failure == null) {
+            pendingJob.completion().complete(null);
+        } else {
+            pendingJob.completion().completeExceptionally(failure);
+        }
+    }
+
+    private void finish(PendingJob pendingJob) {
+        List<PendingJob> ready;
+        synchronized (this) {
+            pending.release(pendingJob.cost());
+            ready = admit();
+        }
+        ready.forEach(this::start);
+    }
+
+    // Guarded by this.
+    private List<PendingJob> admit() {
+        List<PendingJob> ready = new ArrayList<>();
+        PendingJob next;
+        while ((next = pending.poll()) != null) {
+            ready.add(next);
+        }
+        return ready;
+    }
+
+    // Besides a full queue, exhausted budgets pause the listeners as soon as anything has to wait for them: the
+    // records are better off on a node that can start them right away.
+    @Override
+    public synchronized boolean hasCapacity() {
+        return pending.size() < maxQueuedJobs && (pending.size() == 0 || !pending.exhausted());
+    }
+
+    @Override
+    public <T> T runEncode(Callable<T> task) throws Exception {
+        Future<T> future = ffmpegExecutor.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public JobWorkspace openWorkspace(String prefix) throws IOException {
+        return workspaceManager.open(prefix, CURRENT_COST.get());
+    }
+
+    @Override
+    public int encodeSlots() {
+        return ffmpegExecutor.getMaximumPoolSize();
+    }
+
+    @Override
+    public synchronized int inFlightJobs() {
+        return pending.admitted();
+    }
+
+    @Override
+    public synchronized int queuedJobs() {
+        return pending.size();
+    }
+
+    @Override
+    public int queuedEncodes() {
+        return ffmpegExecutor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        jobExecutor.shutdown();
+        ffmpegExecutor.shutdown();
+        if (!jobExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} transcoding jobs still running at shutdown", inFlightJobs());
+        }
+        ffmpegExecutor.shutdownNow();
+    }
+
+    private record PendingJob(String name, JobCost cost, Runnable job, CompletableFuture<Void> completion) {
+    }
+
+}
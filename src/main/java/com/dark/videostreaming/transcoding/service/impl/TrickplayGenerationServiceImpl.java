@@ -0,0 +1,137 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.event.Event;
+import com.dark.videostreaming.transcoding.event.model.TrickplayUpdateEvent;
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.media.TrickplayCommandPlanner;
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.ThumbnailStorageService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.TrickplayGenerationService;
+import com.dark.videostreaming.transcoding.service.VideoStorageService;
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RequiredArgsConstructor
+@Slf4j
+@Service
+public class TrickplayGenerationServiceImpl implements TrickplayGenerationService {
+
+    private static final String PIPELINE = "trickplay";
+
+    private final VideoStorageService videoStorageService;
+    private final ThumbnailStorageService thumbnailStorageService;
+    private final StatusPublisher statusPublisher;
+    private final TranscodingScheduler transcodingScheduler;
+    private final SourceInputService sourceInputService;
+    private final PipelineMetrics pipelineMetrics;
+    private final FfmpegSupervisor ffmpegSupervisor;
+    private final AdmissionController admissionController;
+
+    @Value("${transcoding.trickplay.interval-seconds:10}")
+    private double interval;
+
+    @Value("${transcoding.trickplay.tile-width:160}")
+    private int tileWidth;
+
+    @Value("${transcoding.trickplay.columns:10}")
+    private int columns;
+
+    @Value("${transcoding.trickplay.rows:10}")
+    private int rows;
+
+    @Value("${transcoding.trickplay.format:jpg}")
+    private String format;
+
+    @Value("${transcoding.trickplay.keyframes-only:false}")
+    private boolean keyframesOnly;
+
+    @Override
+    public CompletableFuture<Void> generateTrickplay(VideoUploadedEvent event) {
+        return transcodingScheduler.submit("trickplay-" + event.videoId(),
+                admissionController.estimate("trickplay", videoStorageService, event.fileName(), event.fileSize()),
+                () -> generateAndStoreTrickplay(event.videoId(), event.fileName()));
+    }
+
+    private void generateAndStoreTrickplay(long videoId, String filename) {
+        try (JobWorkspace workspace = transcodingScheduler.openWorkspace("trickplay-" + videoId)) {
+            publish(TrickplayUpdateEvent.builder().videoId(videoId).status("processing").build());
+            MediaSource source = sourceInputService.open(PIPELINE, videoStorageService,
+                    videoStorageService.stat(filename), workspace);
+            double duration = source.info().duration();
+            int tileHeight = TrickplayCommandPlanner.tileHeight(source.info(), tileWidth);
+            Path outputDir = Files.createDirectory(workspace.resolve("trickplay"));
+            transcodingScheduler.runEncode(() -> {
+                long start = System.nanoTime();
+                pipelineMetrics.time(PIPELINE, "encode", () -> {
+                    ffmpegSupervisor.run("trickplay-" + videoId, TrickplayCommandPlanner.spriteCommand(source,
+                            interval, tileWidth, tileHeight, columns, rows, format, keyframesOnly,
+                            outputDir.toString()), null);
+                    return outputDir;
+                });
+                pipelineMetrics.encoded(PIPELINE, duration, System.nanoTime() - start);
+                return outputDir;
+            });
+
+            List<Path> sprites;
+            try (Stream<Path> files = Files.list(outputDir)) {
+                sprites = files.sorted().toList();
+            }
+            // The sheets are what ffmpeg actually decoded; a duration rounded up must not point past the last one.
+            int frames = Math.min(TrickplayCommandPlanner.frameCount(duration, interval),
+                    sprites.size() * columns * rows);
+            Path manifest = outputDir.resolve(TrickplayCommandPlanner.MANIFEST);
+            Files.writeString(manifest, TrickplayCommandPlanner.webVtt(frames, interval, duration, tileWidth,
+                    tileHeight, columns, rows, format));
+
+            String prefix = videoId + "/trickplay/";
+            long uploadStart = System.nanoTime();
+            long size = pipelineMetrics.time(PIPELINE, "upload", () -> {
+                long bytes = 0;
+                for (Path sprite : sprites) {
+                    thumbnailStorageService.save(sprite, prefix + sprite.getFileName());
+                    bytes += Files.size(sprite);
+                }
+                thumbnailStorageService.save(manifest, prefix + TrickplayCommandPlanner.MANIFEST);
+                return bytes + Files.size(manifest);
+            });
+            pipelineMetrics.transferred(PIPELINE, "upload", size, System.nanoTime() - uploadStart);
+            log.info("Video {} got {} trickplay sheets for {} frames", videoId, sprites.size(), frames);
+
+            publish(TrickplayUpdateEvent.builder()
+                    .videoId(videoId)
+                    .manifest(prefix + TrickplayCommandPlanner.MANIFEST)
+                    .sprites(sprites.size())
+                    .intervalSeconds(interval)
+                    .status("ready")
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (Exception e) {
+            publish(TrickplayUpdateEvent.builder().videoId(videoId).status("failed").build());
+            throw new RuntimeException("Failed to create trickplay track: ", e);
+        }
+    }
+
+    private void publish(TrickplayUpdateEvent updateEvent) {
+        statusPublisher.publish("video.trickplay.events", updateEvent.getVideoId(), updateEvent.getStatus(),
+                new Event<TrickplayUpdateEvent>("TrickplayUpdateEvent", "1.0", Instant.now(), updateEvent));
+    }
+
+}
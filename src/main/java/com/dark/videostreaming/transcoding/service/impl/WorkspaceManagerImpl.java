@@ -0,0 +1,250 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.WorkspaceManager;
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Hands every job its own directory, on a RAM-backed root when the job is small enough and there is room, and on
+// the disk root otherwise. Each workspace carries an owner marker, so the sweeper can tell directories left
+// behind by a crashed process from those of jobs that are still running. Job checkpoints live outside the
+// workspaces but hold stage outputs on the same disk, so they count towards the disk usage as well.
+@Slf4j
+@Service
+public class WorkspaceManagerImpl implements WorkspaceManager {
+
+    private static final String OWNER_FILE = ".owner";
+    private static final String OWNER = ProcessHandle.current().pid() + " "
+            + ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+
+    private final Path diskRoot;
+    private final Path ramRoot;
+    private final Path checkpointRoot;
+    private final long diskQuota;
+    private final long ramQuota;
+    private final long ramMaxJobBytes;
+    private final Duration orphanAge;
+
+    private final Map<Path, Reservation> live = new ConcurrentHashMap<>();
+    private final AtomicLong diskReserved = new AtomicLong();
+    private final AtomicLong ramReserved = new AtomicLong();
+    private volatile long diskUsed;
+    private volatile long ramUsed;
+
+    public WorkspaceManagerImpl(MeterRegistry meterRegistry,
+            @Value("${transcoding.work-dir}") Path diskRoot,
+            @Value("${transcoding.workspace.disk-quota:0}") long diskQuota,
+            @Value("${transcoding.workspace.ram-root:}") String ramRoot,
+            @Value("${transcoding.workspace.ram-quota:1073741824}") long ramQuota,
+            @Value("${transcoding.workspace.ram-max-job-bytes:268435456}") long ramMaxJobBytes,
+            @Value("${transcoding.workspace.orphan-age:1h}") Duration orphanAge,
+            @Value("${transcoding.checkpoint.dir}") Path checkpointRoot) throws IOException {
+        this.diskRoot = Files.createDirectories(diskRoot);
+        this.checkpointRoot = checkpointRoot;
+        this.diskQuota = diskQuota > 0 ? diskQuota : Files.getFileStore(diskRoot).getUsableSpace() / 10 * 8;
+        this.ramRoot = ramRoot.isBlank() ? null : createRamRoot(Path.of(ramRoot));
+        this.ramQuota = ramQuota;
+        this.ramMaxJobBytes = ramMaxJobBytes;
+        this.orphanAge = orphanAge;
+        Gauge.builder("transcoding.workspace.bytes", this, WorkspaceManager::usedBytes)
+                .description("Bytes held by job workspaces").tag("medium", "disk").register(meterRegistry);
+        Gauge.builder("transcoding.workspace.bytes", this, manager -> manager.ramUsed)
+                .description("Bytes held by job workspaces").tag("medium", "ram").register(meterRegistry);
+        Gauge.builder("transcoding.workspace.reserved", diskReserved, AtomicLong::get)
+                .description("Bytes reserved by the estimates of running jobs").tag("medium", "disk")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.workspace.reserved", ramReserved, AtomicLong::get)
+                .description("Bytes reserved by the estimates of running jobs").tag("medium", "ram")
+                .register(meterRegistry);
+        log.info("Workspaces on {} with a quota of {}, RAM root {}", this.diskRoot,
+                FileUtils.byteCountToDisplaySize(this.diskQuota), this.ramRoot == null ? "disabled" : this.ramRoot);
+    }
+
+    private static Path createRamRoot(Path root) {
+        try {
+            return Files.createDirectories(root);
+        } catch (IOException e) {
+            log.warn("RAM workspace root {} is not usable, every workspace goes to disk", root, e);
+            return null;
+        }
+    }
+
+    @Override
+    public JobWorkspace open(String prefix, JobCost cost) throws IOException {
+        long bytes = cost == null ? 0 : cost.diskBytes();
+        boolean ram = ramRoot != null && bytes <= ramMaxJobBytes && hasRamRoom(bytes)
+                && reserve(ramReserved, bytes, ramQuota);
+        AtomicLong reserved = ram ? ramReserved : diskReserved;
+        if (!ram) {
+            diskReserved.addAndGet(bytes);
+        }
+        Path dir;
+        try {
+            dir = Files.createTempDirectory(ram ? ramRoot : diskRoot, prefix + "-");
+        } catch (IOException e) {
+            reserved.addAndGet(-bytes);
+            throw e;
+        }
+        // Live before it is marked as ours, so the sweeper never mistakes it for a leftover.
+        live.put(dir, new Reservation(ram));
+        try {
+            Files.writeString(dir.resolve(OWNER_FILE), OWNER);
+        } catch (IOException e) {
+            live.remove(dir);
+            reserved.addAndGet(-bytes);
+            FileUtils.deleteQuietly(dir.toFile());
+            throw e;
+        }
+        return new JobWorkspace(dir, () -> {
+            live.remove(dir);
+            reserved.addAndGet(-bytes);
+        });
+    }
+
+    // Estimates miss, so the RAM root is also held to what its workspaces really use and to what the tmpfs has
+    // left; a job that doesn't fit goes to disk instead.
+    private boolean hasRamRoom(long bytes) {
+        if (ramUsed + bytes > ramQuota) {
+            return false;
+        }
+        try {
+            return Files.getFileStore(ramRoot).getUsableSpace() >= bytes;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean reserve(AtomicLong reserved, long bytes, long quota) {
+        long current;
+        do {
+            current = reserved.get();
+            if (current + bytes > quota) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    @Override
+    public long diskQuota() {
+        return diskQuota;
+    }
+
+    @Override
+    public long usedBytes() {
+        return diskUsed;
+    }
+
+    // Estimates are only estimates; the real size of the live workspaces is what admission ends up checking.
+    @Scheduled(fixedDelayString = "${transcoding.workspace.usage-interval:30s}")
+    public void measure() {
+        long disk = sizeOf(checkpointRoot);
+        long ram = 0;
+        for (Map.Entry<Path, Reservation> workspace : live.entrySet()) {
+            long size = sizeOf(workspace.getKey());
+            if (workspace.getValue().ram()) {
+                ram += size;
+            } else {
+                disk += size;
+            }
+        }
+        diskUsed = disk;
+        ramUsed = ram;
+    }
+
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    // Deleted while walking.
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            // The job closed its workspace in the meantime, or no checkpoint was written yet.
+            return 0;
+        }
+    }
+
+    @Override
+    @Scheduled(initialDelay = 0, fixedDelayString = "${transcoding.workspace.sweep-interval:15m}")
+    public void sweep() {
+        List<Path> roots = new ArrayList<>(List.of(diskRoot));
+        if (ramRoot != null) {
+            roots.add(ramRoot);
+        }
+        for (Path root : roots) {
+            List<Path> dirs;
+            try (Stream<Path> children = Files.list(root)) {
+                dirs = children.filter(dir -> Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)).toList();
+            } catch (IOException e) {
+                log.warn("Failed to list workspace root {}", root, e);
+                continue;
+            }
+            for (Path dir : dirs) {
+                if (!live.containsKey(dir) && isOrphan(dir)) {
+                    long size = sizeOf(dir);
+                    try {
+                        FileUtils.deleteDirectory(dir.toFile());
+                        log.info("Swept orphaned workspace {} ({})", dir, FileUtils.byteCountToDisplaySize(size));
+                    } catch (IOException e) {
+                        log.warn("Failed to sweep orphaned workspace {}", dir, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isOrphan(Path dir) {
+        Path marker = dir.resolve(OWNER_FILE);
+        try {
+            if (!Files.exists(marker)) {
+                // Older than the markers, or the job died between creating the directory and writing its marker.
+                return Files.getLastModifiedTime(dir).toInstant().isBefore(Instant.now().minus(orphanAge));
+            }
+            String owner = Files.readString(marker).trim();
+            if (owner.equals(OWNER)) {
+                // Ours, but no job holds it any more: its deletion failed.
+                return true;
+            }
+            String[] fields = owner.split(" ");
+            Optional<ProcessHandle> process = ProcessHandle.of(Long.parseLong(fields[0]));
+            // A reused pid belongs to a process started at a different time.
+            return process.isEmpty() || !process.get().info().startInstant()
+                    .map(start -> String.valueOf(start.toEpochMilli()).equals(fields[1]))
+                    .orElse(false);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can't tell who owns workspace {}, leaving it", dir, e);
+            return false;
+        }
+    }
+
+    private record Reservation(boolean ram) {
+    }
+
+}
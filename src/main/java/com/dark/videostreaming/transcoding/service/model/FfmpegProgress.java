@@ -0,0 +1,11 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+// One block of ffmpeg's -progress output. Values ffmpeg reported as N/A are 0.
+public record FfmpegProgress(
+        long frame,
+        double fps,
+        double outTimeSeconds,
+        double speed,
+        long totalSize,
+        boolean done) {
+}
@@ -0,0 +1,11 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+// What a job is expected to take from the node while it runs. cpu is in job units: one for a single encoder,
+// more for jobs that run several at once. downloadBytes is what has to be fetched whole before the encode starts.
+public record JobCost(
+        double mediaSeconds,
+        int cpu,
+        long diskBytes,
+        long memoryBytes,
+        long downloadBytes) {
+}
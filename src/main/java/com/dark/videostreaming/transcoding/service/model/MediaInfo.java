@@ -0,0 +1,31 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.util.Arrays;
+import java.util.Set;
+
+public record MediaInfo(
+        double duration,
+        String formatName,
+        long bitRate,
+        String videoCodec,
+        int width,
+        int height,
+        double frameRate,
+        long frameCount,
+        long videoBitRate,
+        double keyframeInterval,
+        String audioCodec) {
+
+    // Demuxers that locate samples through an index, so a seek only costs a couple of ranged reads.
+    private static final Set<String> SEEKABLE_FORMATS = Set.of("mov", "mp4", "m4a", "3gp", "3g2", "mj2",
+            "matroska", "webm");
+
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+
+    public boolean seekableRemotely() {
+        return formatName != null && Arrays.stream(formatName.split(",")).anyMatch(SEEKABLE_FORMATS::contains);
+    }
+
+}
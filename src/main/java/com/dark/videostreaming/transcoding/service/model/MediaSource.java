@@ -0,0 +1,23 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.util.List;
+
+public record MediaSource(
+        String location,
+        boolean remote,
+        MediaInfo info) {
+
+    public List<String> inputArgs() {
+        if (!remote) {
+            return List.of("-i", location);
+        }
+        // NOTE: ffmpeg's http protocol issues Range requests when seeking, so only the parts of the object it
+        // actually reads are fetched. Reconnecting keeps a long encode alive across a dropped connection.
+        return List.of(
+                "-reconnect", "1",
+                "-reconnect_on_network_error", "1",
+                "-reconnect_delay_max", "5",
+                "-i", location);
+    }
+
+}
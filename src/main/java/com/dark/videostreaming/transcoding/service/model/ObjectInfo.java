@@ -0,0 +1,11 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.util.Map;
+
+public record ObjectInfo(
+        String bucket,
+        String name,
+        long size,
+        String etag,
+        Map<String, String> userMetadata) {
+}
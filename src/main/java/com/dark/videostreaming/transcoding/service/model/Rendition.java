@@ -0,0 +1,33 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record Rendition(
+        String name,
+        int height,
+        int videoBitrate,
+        int audioBitrate) {
+
+    // Parses "name:height:videoKbps:audioKbps" entries separated by commas, e.g. "720p:720:2800:128".
+    public static List<Rendition> parseLadder(String ladder) {
+        List<Rendition> renditions = new ArrayList<>();
+        for (String entry : ladder.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid rendition '" + entry + "'");
+            }
+            renditions.add(new Rendition(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3])));
+        }
+        return renditions;
+    }
+
+    public int widthFor(int sourceWidth, int sourceHeight) {
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            return Math.round(height * 16 / 9f / 2) * 2;
+        }
+        return Math.round((float) height * sourceWidth / sourceHeight / 2) * 2;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+public record RetryPolicy(
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff) {
+
+    // Doubles with every attempt up to maxBackoff; the jitter keeps retries of many jobs from lining up.
+    public Duration backoff(int attempt) {
+        long millis = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.dark.videostreaming.transcoding.service.model;
+
+import java.time.Instant;
+
+public record StoredArtifact(
+        String name,
+        long size,
+        Instant createdAt) {
+}
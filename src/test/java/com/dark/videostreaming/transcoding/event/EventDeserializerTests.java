@@ -0,0 +1,121 @@
+package com.dark.videostreaming.transcoding.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+
+import com.dark.videostreaming.transcoding.event.model.VideoUploadedEvent;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class EventDeserializerTests {
+
+	private static final String TOPIC = "video.events";
+	private static final VideoUploadedEvent UPLOADED = new VideoUploadedEvent(7, "clip.mp4", 1024);
+
+	private final EventTypeRegistry registry = new EventTypeRegistry();
+	private final EventDeserializer deserializer = new EventDeserializer(Jackson2ObjectMapperBuilder.json().build(),
+			registry);
+
+	@Test
+	void decodesThePayloadAfterTheEnvelope() {
+		Event<?> event = decode("""
+				{"eventType":"VideoUploaded","version":"1","timestamp":"2024-05-01T10:00:00Z",
+				 "payload":{"videoId":7,"fileName":"clip.mp4","fileSize":1024}}""");
+
+		assertEquals("VideoUploaded", event.getEventType());
+		assertEquals("1", event.getVersion());
+		assertEquals(Instant.parse("2024-05-01T10:00:00Z"), event.getTimestamp());
+		assertEquals(UPLOADED, event.getPayload());
+	}
+
+	@Test
+	void decodesThePayloadBeforeTheEnvelope() {
+		Event<?> event = decode("""
+				{"payload":{"videoId":7,"fileName":"clip.mp4","fileSize":1024},
+				 "timestamp":"2024-05-01T10:00:00Z","version":"1","eventType":"VideoUploaded"}""");
+
+		assertEquals("VideoUploaded", event.getEventType());
+		assertEquals(UPLOADED, event.getPayload());
+	}
+
+	@Test
+	void decodesAPayloadBetweenTheEnvelopeFields() {
+		Event<?> event = decode("""
+				{"eventType":"VideoUploaded","payload":{"videoId":7,"fileName":"clip.mp4","fileSize":1024},
+				 "version":"1"}""");
+
+		assertEquals(UPLOADED, event.getPayload());
+	}
+
+	@Test
+	void decodesAMinorVersionWithNewFieldsIntoTheSameClass() {
+		Event<?> event = decode("""
+				{"eventType":"VideoUploaded","version":"1.4",
+				 "payload":{"videoId":7,"fileName":"clip.mp4","fileSize":1024,"checksum":"abc"}}""");
+
+		assertEquals(UPLOADED, event.getPayload());
+	}
+
+	@Test
+	void keepsThePayloadOfAnUnknownEventAsATree() {
+		Event<?> event = decode("""
+				{"payload":{"videoId":7},"eventType":"VideoDeleted","version":"1"}""");
+
+		assertEquals(Map.of("videoId", 7), event.getPayload());
+	}
+
+	@Test
+	void keepsThePayloadOfAnUnknownMajorVersionAsATree() {
+		Event<?> event = decode("""
+				{"eventType":"VideoUploaded","version":"2.0","payload":{"videoId":7}}""");
+
+		assertInstanceOf(Map.class, event.getPayload());
+	}
+
+	@Test
+	void skipsFieldsOutsideTheEnvelope() {
+		Event<?> event = decode("""
+				{"eventType":"VideoUploaded","trace":{"id":[1,2]},"version":"1",
+				 "payload":{"videoId":7,"fileName":"clip.mp4","fileSize":1024}}""");
+
+		assertEquals(UPLOADED, event.getPayload());
+	}
+
+	@Test
+	void decodesANullPayload() {
+		assertNull(decode("""
+				{"payload":null,"eventType":"VideoUploaded","version":"1"}""").getPayload());
+	}
+
+	@Test
+	void passesATombstoneThrough() {
+		assertNull(deserializer.deserialize(TOPIC, null));
+	}
+
+	@Test
+	void rejectsARecordThatIsNotAnObject() {
+		assertThrows(SerializationException.class, () -> decode("[1,2,3]"));
+		assertThrows(SerializationException.class, () -> decode("{\"eventType\":"));
+	}
+
+	@Test
+	void takesAMissingVersionAsTheFirst() {
+		assertEquals(VideoUploadedEvent.class, registry.payloadType("VideoUploaded", null));
+		assertEquals(VideoUploadedEvent.class, registry.payloadType("VideoUploaded", "1.2.3"));
+		assertNull(registry.payloadType("VideoUploaded", "v1"));
+		assertNull(registry.payloadType(null, "1"));
+	}
+
+	private Event<?> decode(String json) {
+		return deserializer.deserialize(TOPIC, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
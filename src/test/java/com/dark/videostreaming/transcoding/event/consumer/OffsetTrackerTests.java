@@ -0,0 +1,83 @@
+package com.dark.videostreaming.transcoding.event.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+class OffsetTrackerTests {
+
+	private static final String TOPIC = "video.events";
+
+	private final OffsetTracker offsetTracker = new OffsetTracker();
+	private final List<String> acknowledged = new ArrayList<>();
+
+	@Test
+	void acknowledgesOnceEveryEarlierRecordIsDone() {
+		for (long offset = 0; offset < 3; offset++) {
+			offsetTracker.received(record(0, offset));
+		}
+
+		finish(0, 2);
+		assertEquals(List.of(), acknowledged);
+
+		finish(0, 0);
+		assertEquals(List.of("0@0"), acknowledged);
+
+		// The second record releases the third, which finished first, and one ack covers both.
+		finish(0, 1);
+		assertEquals(List.of("0@0", "0@2"), acknowledged);
+	}
+
+	@Test
+	void keepsPartitionsApart() {
+		offsetTracker.received(record(0, 0));
+		offsetTracker.received(record(1, 0));
+
+		finish(1, 0);
+
+		assertEquals(List.of("1@0"), acknowledged);
+	}
+
+	@Test
+	void leavesTheRecordsOfARevokedPartitionToTheNewOwner() {
+		offsetTracker.received(record(0, 0));
+		offsetTracker.received(record(0, 1));
+		offsetTracker.received(record(1, 0));
+
+		offsetTracker.onPartitionsRevokedBeforeCommit(null, List.of(new TopicPartition(TOPIC, 0)));
+		finish(0, 1);
+		finish(0, 0);
+		finish(1, 0);
+
+		assertEquals(List.of("1@0"), acknowledged);
+	}
+
+	@Test
+	void doesNotAcknowledgeAnOldJobOnceThePartitionIsAssignedBack() {
+		offsetTracker.received(record(0, 5));
+		offsetTracker.onPartitionsLost(null, List.of(new TopicPartition(TOPIC, 0)));
+		// The partition comes back from a later committed offset while the old job is still running.
+		offsetTracker.received(record(0, 8));
+
+		finish(0, 5);
+		assertEquals(List.of(), acknowledged);
+
+		finish(0, 8);
+		assertEquals(List.of("0@8"), acknowledged);
+	}
+
+	private void finish(int partition, long offset) {
+		offsetTracker.done(record(partition, offset), () -> acknowledged.add(partition + "@" + offset));
+	}
+
+	private static ConsumerRecord<String, String> record(int partition, long offset) {
+		return new ConsumerRecord<>(TOPIC, partition, offset, "key", "value");
+	}
+
+}
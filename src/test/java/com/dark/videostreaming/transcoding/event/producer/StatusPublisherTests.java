@@ -0,0 +1,136 @@
+package com.dark.videostreaming.transcoding.event.producer;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.event.Event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StatusPublisherTests {
+
+	private static final String TOPIC = "video.preview.events";
+
+	@SuppressWarnings("unchecked")
+	private final KafkaTemplate<String, Event<?>> kafkaTemplate = mock(KafkaTemplate.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private StatusPublisher statusPublisher;
+
+	@AfterEach
+	void tearDown() {
+		statusPublisher.shutdown();
+	}
+
+	@Test
+	void collapsesIntermediateStatusesIntoTheLatest() {
+		sendSucceeds();
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 50);
+		Event<?> first = event("processing");
+		Event<?> second = event("processing");
+		Event<?> third = event("processing");
+
+		statusPublisher.publish(TOPIC, 1, "processing", first);
+		statusPublisher.publish(TOPIC, 1, "processing", second);
+		statusPublisher.publish(TOPIC, 1, "processing", third);
+
+		verify(kafkaTemplate, timeout(1000)).send(TOPIC, "1", third);
+		verify(kafkaTemplate, after(200).never()).send(TOPIC, "1", first);
+		verify(kafkaTemplate, never()).send(TOPIC, "1", second);
+		assertEquals(2, meterRegistry.counter("transcoding.status.coalesced", "topic", TOPIC).count());
+	}
+
+	@Test
+	void keepsVideosApart() {
+		sendSucceeds();
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 50);
+		Event<?> one = event("processing");
+		Event<?> two = event("processing");
+
+		statusPublisher.publish(TOPIC, 1, "processing", one);
+		statusPublisher.publish(TOPIC, 2, "processing", two);
+
+		verify(kafkaTemplate, timeout(1000)).send(TOPIC, "1", one);
+		verify(kafkaTemplate, timeout(1000)).send(TOPIC, "2", two);
+	}
+
+	@Test
+	void sendsTerminalStatusesRightAwayAndDropsTheHeldBackOne() {
+		sendSucceeds();
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 200);
+		Event<?> processing = event("processing");
+		Event<?> ready = event("ready");
+
+		statusPublisher.publish(TOPIC, 1, "processing", processing);
+		statusPublisher.publish(TOPIC, 1, "ready", ready);
+
+		verify(kafkaTemplate).send(TOPIC, "1", ready);
+		// Not even once the window has passed: an older status never follows the terminal one.
+		verify(kafkaTemplate, after(400).never()).send(TOPIC, "1", processing);
+	}
+
+	@Test
+	void keepsTheOrderOfStatusesSentAfterTheWindow() {
+		sendSucceeds();
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 20);
+		Event<?> processing = event("processing");
+		Event<?> failed = event("failed");
+
+		statusPublisher.publish(TOPIC, 1, "processing", processing);
+		verify(kafkaTemplate, timeout(1000)).send(TOPIC, "1", processing);
+		statusPublisher.publish(TOPIC, 1, "failed", failed);
+
+		InOrder order = inOrder(kafkaTemplate);
+		order.verify(kafkaTemplate).send(TOPIC, "1", processing);
+		order.verify(kafkaTemplate).send(TOPIC, "1", failed);
+	}
+
+	@Test
+	void countsASendThatFailsRightAwayInsteadOfThrowingIt() {
+		when(kafkaTemplate.send(anyString(), anyString(), any())).thenThrow(new IllegalStateException("no broker"));
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 50);
+
+		assertDoesNotThrow(() -> statusPublisher.publish(TOPIC, 1, "ready", event("ready")));
+		assertEquals(1, meterRegistry.counter("transcoding.status.failed", "topic", TOPIC).count());
+	}
+
+	@Test
+	void countsASendTheBrokerRejects() {
+		when(kafkaTemplate.send(anyString(), anyString(), any()))
+				.thenReturn(CompletableFuture.failedFuture(new IllegalStateException("rejected")));
+		statusPublisher = new StatusPublisher(kafkaTemplate, meterRegistry, 50);
+
+		statusPublisher.publish(TOPIC, 1, "failed", event("failed"));
+
+		verify(kafkaTemplate).send(eq(TOPIC), eq("1"), any());
+		assertEquals(1, meterRegistry.counter("transcoding.status.failed", "topic", TOPIC).count());
+	}
+
+	private void sendSucceeds() {
+		when(kafkaTemplate.send(anyString(), anyString(), any()))
+				.thenReturn(CompletableFuture.<SendResult<String, Event<?>>>completedFuture(null));
+	}
+
+	private static Event<?> event(String status) {
+		return new Event<>("PreviewUpdateEvent", "1.0", Instant.now(), status);
+	}
+
+}
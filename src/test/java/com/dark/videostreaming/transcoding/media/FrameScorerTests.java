@@ -0,0 +1,70 @@
+package com.dark.videostreaming.transcoding.media;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class FrameScorerTests {
+
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 36;
+
+	@Test
+	void rejectsBlackFrames() {
+		assertEquals(-1, FrameScorer.best(List.of(score((x, y) -> 0))));
+	}
+
+	@Test
+	void rejectsBlownOutFrames() {
+		assertEquals(-1, FrameScorer.best(List.of(score((x, y) -> 250))));
+	}
+
+	@Test
+	void rejectsFlatFrames() {
+		FrameScorer.Score flat = score((x, y) -> 128);
+		assertEquals(0, flat.contrast());
+		assertEquals(-1, FrameScorer.best(List.of(flat)));
+	}
+
+	@Test
+	void returnsNoFrameWhenEveryFrameIsRejected() {
+		assertEquals(-1, FrameScorer.best(List.of(score((x, y) -> 0), score((x, y) -> 250),
+				score((x, y) -> 128))));
+		assertEquals(-1, FrameScorer.best(List.of()));
+	}
+
+	@Test
+	void picksTheSharperFrame() {
+		// Same pixels, so the same brightness, contrast and histogram: one hard edge against edges everywhere.
+		FrameScorer.Score soft = score((x, y) -> x < WIDTH / 2 ? 64 : 192);
+		FrameScorer.Score sharp = score((x, y) -> x % 2 == 0 ? 64 : 192);
+		assertEquals(soft.brightness(), sharp.brightness());
+		assertEquals(soft.contrast(), sharp.contrast());
+		assertTrue(sharp.sharpness() > soft.sharpness());
+
+		assertEquals(1, FrameScorer.best(List.of(soft, sharp)));
+		assertEquals(0, FrameScorer.best(List.of(sharp, soft)));
+	}
+
+	@Test
+	void picksAUsableFrameOverRejectedOnes() {
+		FrameScorer.Score usable = score((x, y) -> x < WIDTH / 2 ? 64 : 192);
+		assertEquals(1, FrameScorer.best(List.of(score((x, y) -> 0), usable, score((x, y) -> 250))));
+	}
+
+	private static FrameScorer.Score score(IntBinaryOperator pixel) {
+		ByteBuffer frame = ByteBuffer.allocate(WIDTH * HEIGHT);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				frame.put(y * WIDTH + x, (byte) pixel.applyAsInt(x, y));
+			}
+		}
+		return FrameScorer.score(frame, WIDTH, HEIGHT);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.dark.videostreaming.transcoding.media;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.dark.videostreaming.transcoding.service.model.MediaSource;
+
+import org.junit.jupiter.api.Test;
+
+class PreviewCommandPlannerTests {
+
+	private static final MediaSource SOURCE = new MediaSource("/work/clip.mp4", false, null);
+
+	@Test
+	void placesTheClipsAtAQuarterHalfAndThreeQuartersOfTheVideo() {
+		assertEquals(List.of(25.0, 50.0, 75.0), PreviewCommandPlanner.clipStarts(100));
+	}
+
+	@Test
+	void snapsEveryStartToTheFirstKeyframeOfItsClip() {
+		List<Double> keyframes = List.of(20.0, 24.0, 26.0, 28.0, 52.5, 77.0);
+
+		assertEquals(List.of(26.0, 52.5, 77.0),
+				PreviewCommandPlanner.alignToKeyframes(List.of(25.0, 50.0, 75.0), keyframes));
+	}
+
+	@Test
+	void takesAStartOnAKeyframeAsIs() {
+		assertEquals(List.of(25.0), PreviewCommandPlanner.alignToKeyframes(List.of(25.0), List.of(25.0, 27.0)));
+	}
+
+	@Test
+	void fallsBackToTheLastKeyframeBeforeTheStartWhenTheClipHasNone() {
+		// 31 is past the clip's window and 19 is more than a clip length before the start.
+		assertEquals(List.of(22.0),
+				PreviewCommandPlanner.alignToKeyframes(List.of(25.0), List.of(19.0, 21.0, 22.0, 31.0)));
+	}
+
+	@Test
+	void givesUpWhenAWindowHasNoKeyframeAtAll() {
+		// The first clip would align, but the second has nothing within a clip length on either side.
+		assertNull(PreviewCommandPlanner.alignToKeyframes(List.of(25.0, 50.0), List.of(25.0, 40.0, 60.0)));
+	}
+
+	@Test
+	void cutsEveryClipOneClipLengthAfterItsInpoint() {
+		String list = PreviewCommandPlanner.concatList(SOURCE, List.of(26.0, 52.5));
+
+		assertEquals("""
+				ffconcat version 1.0
+				file '/work/clip.mp4'
+				inpoint 26.000
+				outpoint 31.000
+				file '/work/clip.mp4'
+				inpoint 52.500
+				outpoint 57.500
+				""", list);
+	}
+
+	@Test
+	void escapesQuotesInTheConcatList() {
+		MediaSource source = new MediaSource("/work/it's.mp4", false, null);
+
+		assertTrue(PreviewCommandPlanner.concatList(source, List.of(1.0)).contains("file '/work/it'\\''s.mp4'\n"));
+	}
+
+	@Test
+	void probesALittlePastEveryClip() {
+		List<String> command = PreviewCommandPlanner.keyframeProbeCommand(SOURCE, List.of(25.0, 50.0));
+
+		assertEquals("25.000%+8,50.000%+8", command.get(command.indexOf("-read_intervals") + 1));
+	}
+
+}
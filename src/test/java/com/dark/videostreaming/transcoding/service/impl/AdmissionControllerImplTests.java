@@ -0,0 +1,114 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.media.PreviewCommandPlanner;
+import com.dark.videostreaming.transcoding.service.MediaProbeService;
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+import com.dark.videostreaming.transcoding.service.model.MediaInfo;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerImplTests {
+
+	private static final String LADDER = "720p:720:2800:128,360p:360:800:96";
+	// 8 Mbit/s, so a megabyte of source is guessed to hold one second of media.
+	private static final long NOMINAL_BITRATE = 8_000_000;
+	private static final long SIZE = 60_000_000;
+
+	private final MediaProbeService mediaProbeService = mock(MediaProbeService.class);
+	private final MinioStorageService storage = mock(MinioStorageService.class);
+	private final ObjectInfo object = new ObjectInfo("videos", "clip.mp4", SIZE, "etag-a", Map.of());
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(storage.stat("clip.mp4")).thenReturn(object);
+		when(mediaProbeService.cached(any())).thenReturn(Optional.empty());
+	}
+
+	@Test
+	void guessesTheDurationFromTheSizeWithoutAProbe() {
+		JobCost cost = controller("stream").estimate("trickplay", storage, "clip.mp4", SIZE);
+
+		assertEquals(60, cost.mediaSeconds(), 0.001);
+		assertEquals(0, cost.downloadBytes());
+	}
+
+	@Test
+	void takesTheDurationFromTheCachedProbe() {
+		when(mediaProbeService.cached(object)).thenReturn(Optional.of(info(3600, "mov,mp4,m4a,3gp,3g2,mj2")));
+
+		JobCost cost = controller("stream").estimate("renditions", storage, "clip.mp4", SIZE);
+
+		assertEquals(3600, cost.mediaSeconds(), 0.001);
+		assertEquals(2, cost.cpu());
+		// Both renditions are written for the whole hour.
+		assertEquals(SIZE + (2800 + 128 + 800 + 96) * 1000 / 8 * 3600L, cost.diskBytes());
+	}
+
+	@Test
+	void guessesFromTheSizeWhenTheSourceCantBeStatted() throws Exception {
+		when(storage.stat("clip.mp4")).thenThrow(new IllegalStateException("storage is down"));
+
+		JobCost cost = controller("stream").estimate("trickplay", storage, "clip.mp4", SIZE);
+
+		assertEquals(60, cost.mediaSeconds(), 0.001);
+	}
+
+	@Test
+	void capsThePreviewAtItsClipsButCountsTheDownloadOfASourceThatCantBeSeeked() {
+		when(mediaProbeService.cached(object)).thenReturn(Optional.of(info(3600, "avi")));
+
+		JobCost cost = controller("stream").estimate("preview", storage, "clip.mp4", SIZE);
+
+		assertEquals(3 * PreviewCommandPlanner.CLIP_LENGTH, cost.mediaSeconds(), 0.001);
+		assertEquals(SIZE, cost.downloadBytes());
+	}
+
+	@Test
+	void streamsASeekableSource() {
+		when(mediaProbeService.cached(object)).thenReturn(Optional.of(info(3600, "matroska,webm")));
+
+		JobCost cost = controller("stream").estimate("thumbnail", storage, "clip.mp4", SIZE);
+
+		assertEquals(0, cost.downloadBytes());
+	}
+
+	@Test
+	void countsTheDownloadOfEverySourceInDownloadMode() {
+		JobCost cost = controller("download").estimate("thumbnail", storage, "clip.mp4", SIZE);
+
+		assertEquals(SIZE, cost.downloadBytes());
+	}
+
+	@Test
+	void learnsTheBitrateFromProbedSources() {
+		AdmissionControllerImpl controller = controller("stream");
+		for (int i = 0; i < 50; i++) {
+			// 2 MB per second of media, twice the nominal rate.
+			controller.observe(120_000_000, info(60, "mp4"));
+		}
+
+		JobCost cost = controller.estimate("trickplay", storage, "clip.mp4", SIZE);
+
+		assertEquals(30, cost.mediaSeconds(), 0.1);
+	}
+
+	private AdmissionControllerImpl controller(String inputMode) {
+		return new AdmissionControllerImpl(mediaProbeService, LADDER, NOMINAL_BITRATE, 1024, inputMode);
+	}
+
+	private static MediaInfo info(double duration, String formatName) {
+		return new MediaInfo(duration, formatName, 0, "h264", 1280, 720, 25, 0, 0, 2, "aac");
+	}
+
+}
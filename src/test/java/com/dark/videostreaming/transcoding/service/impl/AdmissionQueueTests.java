@@ -0,0 +1,166 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.dark.videostreaming.transcoding.service.model.JobCost;
+
+import org.junit.jupiter.api.Test;
+
+class AdmissionQueueTests {
+
+	private static final double[] LANE_LIMITS = { 120, 1800 };
+	private static final int[] LANE_WEIGHTS = { 8, 3, 1 };
+	private static final double DOWNLOAD_RATE = 1000;
+
+	private static final JobCost SHORT = new JobCost(30, 1, 0, 0, 0);
+	private static final JobCost MEDIUM = new JobCost(600, 1, 0, 0, 0);
+	private static final JobCost LONG = new JobCost(7200, 1, 0, 0, 0);
+
+	@Test
+	void startsJobsOfALaneInArrivalOrder() {
+		AdmissionQueue<String> queue = queue(100, 100, 100, () -> 0);
+		queue.add("first", SHORT);
+		queue.add("second", SHORT);
+		queue.add("third", SHORT);
+
+		assertEquals("first", queue.poll());
+		assertEquals("second", queue.poll());
+		assertEquals("third", queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.size());
+		assertEquals(3, queue.admitted());
+	}
+
+	@Test
+	void sortsJobsIntoLanesByMediaSeconds() {
+		AdmissionQueue<String> queue = queue(100, 100, 100, () -> 0);
+		queue.add("long", LONG);
+		queue.add("medium", MEDIUM);
+		queue.add("short", SHORT);
+
+		// The heaviest lane goes first although its job came last.
+		assertEquals("short", queue.poll());
+		assertEquals("medium", queue.poll());
+		assertEquals("long", queue.poll());
+	}
+
+	@Test
+	void countsTheDownloadTowardsTheLane() {
+		AdmissionQueue<String> queue = queue(100, 100, 100, () -> 0);
+		// 30 media seconds, but half an hour of fetching the whole source first.
+		queue.add("downloaded", new JobCost(30, 1, 0, 0, 1_800_000));
+		queue.add("medium", MEDIUM);
+		queue.add("streamed", SHORT);
+
+		assertEquals("streamed", queue.poll());
+		assertEquals("medium", queue.poll());
+		assertEquals("downloaded", queue.poll());
+	}
+
+	@Test
+	void sharesStartsByLaneWeight() {
+		AdmissionQueue<String> queue = queue(100, 100, 100, () -> 0);
+		for (int i = 0; i < 24; i++) {
+			queue.add("short", SHORT);
+			queue.add("medium", MEDIUM);
+			queue.add("long", LONG);
+		}
+
+		List<String> started = new ArrayList<>();
+		for (int i = 0; i < 24; i++) {
+			started.add(queue.poll());
+		}
+		assertEquals(16, started.stream().filter("short"::equals).count());
+		assertEquals(6, started.stream().filter("medium"::equals).count());
+		assertEquals(2, started.stream().filter("long"::equals).count());
+		// Smooth round robin: the light lanes are spread out rather than left to the end.
+		assertTrue(started.subList(0, 12).contains("long"));
+	}
+
+	@Test
+	void holdsJobsBackOnceTheCpuBudgetIsUsed() {
+		AdmissionQueue<String> queue = queue(2, 100, 100, () -> 0);
+		queue.add("first", SHORT);
+		queue.add("second", SHORT);
+		queue.add("third", SHORT);
+
+		assertEquals("first", queue.poll());
+		assertEquals("second", queue.poll());
+		assertNull(queue.poll());
+		assertTrue(queue.exhausted());
+		assertEquals(1, queue.size());
+
+		queue.release(SHORT);
+		assertFalse(queue.exhausted());
+		assertEquals("third", queue.poll());
+	}
+
+	@Test
+	void countsMeasuredDiskUsageWhenItExceedsTheEstimates() {
+		AtomicLong measured = new AtomicLong();
+		AdmissionQueue<String> queue = queue(100, 1000, 100, measured::get);
+		JobCost cost = new JobCost(30, 1, 400, 0, 0);
+		queue.add("first", cost);
+		queue.add("second", cost);
+
+		assertEquals("first", queue.poll());
+		// The first job holds more than it estimated.
+		measured.set(700);
+		assertNull(queue.poll());
+
+		measured.set(300);
+		assertEquals("second", queue.poll());
+	}
+
+	@Test
+	void holdsJobsBackOnTheMemoryBudget() {
+		AdmissionQueue<String> queue = queue(100, 100, 1000, () -> 0);
+		JobCost cost = new JobCost(30, 1, 0, 600, 0);
+		queue.add("first", cost);
+		queue.add("second", cost);
+
+		assertEquals("first", queue.poll());
+		assertNull(queue.poll());
+		queue.release(cost);
+		assertEquals("second", queue.poll());
+	}
+
+	@Test
+	void startsAJobBiggerThanTheBudgetWhenNothingElseRuns() {
+		AdmissionQueue<String> queue = queue(1, 100, 100, () -> 0);
+		queue.add("huge", new JobCost(30, 4, 1000, 1000, 0));
+
+		assertEquals("huge", queue.poll());
+	}
+
+	@Test
+	void doesNotLetALighterLaneSkipAheadOfAJobThatWaitedTooLong() throws InterruptedException {
+		AdmissionQueue<String> queue = new AdmissionQueue<>(LANE_LIMITS, DOWNLOAD_RATE, LANE_WEIGHTS, 0, 100, 2, 100,
+				() -> 0, 100);
+		queue.add("running", SHORT);
+		assertEquals("running", queue.poll());
+		queue.add("long", new JobCost(7200, 2, 0, 0, 0));
+		Thread.sleep(1);
+		queue.add("short", SHORT);
+
+		// The long job is the oldest and doesn't fit next to the running one, so nothing starts.
+		assertNull(queue.poll());
+		queue.release(SHORT);
+		assertEquals("long", queue.poll());
+	}
+
+	private static AdmissionQueue<String> queue(long cpuBudget, long diskBudget, long memoryBudget,
+			LongSupplier measuredDisk) {
+		return new AdmissionQueue<>(LANE_LIMITS, DOWNLOAD_RATE, LANE_WEIGHTS, Long.MAX_VALUE, 100, cpuBudget,
+				diskBudget, measuredDisk, memoryBudget);
+	}
+
+}
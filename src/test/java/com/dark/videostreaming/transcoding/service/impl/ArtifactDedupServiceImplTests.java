@@ -0,0 +1,123 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import com.dark.videostreaming.transcoding.service.MinioStorageService;
+import com.dark.videostreaming.transcoding.service.model.StoredArtifact;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ArtifactDedupServiceImplTests {
+
+	private static final Instant CREATED = Instant.parse("2024-05-01T10:00:00Z");
+	private static final StoredArtifact FIRST = new StoredArtifact("a_preview.mp4", 1200, CREATED);
+	private static final StoredArtifact SECOND = new StoredArtifact("b_preview.mp4", 3400, CREATED);
+
+	@TempDir
+	Path root;
+
+	private Path indexFile;
+	// Every lookup that misses the index ends up here and finds nothing.
+	private final MinioStorageService storage = mock(MinioStorageService.class);
+
+	@BeforeEach
+	void setUp() throws Exception {
+		indexFile = root.resolve("dedup").resolve("index.tsv");
+		when(storage.stat(anyString())).thenThrow(new IllegalStateException("missing"));
+	}
+
+	@Test
+	void replaysTheIndexAtStartup() throws IOException {
+		ArtifactDedupServiceImpl first = service();
+		first.record("key-a", FIRST);
+		first.record("key-b", SECOND);
+
+		ArtifactDedupServiceImpl restarted = service();
+
+		assertEquals(Optional.of(FIRST), restarted.find(storage, "key-a", FIRST.name()));
+		assertEquals(Optional.of(SECOND), restarted.find(storage, "key-b", SECOND.name()));
+	}
+
+	@Test
+	void writesAKeyOnlyOnce() throws IOException {
+		ArtifactDedupServiceImpl service = service();
+		service.record("key-a", FIRST);
+		service.record("key-a", SECOND);
+
+		assertEquals(1, Files.readAllLines(indexFile).size());
+		assertEquals(Optional.of(FIRST), service().find(storage, "key-a", FIRST.name()));
+	}
+
+	@Test
+	void skipsALineThatLostWholeFields() throws IOException {
+		write("key-a\ta_preview.mp4\t1200\t" + CREATED + "\nkey-b\tb_preview.mp4");
+
+		ArtifactDedupServiceImpl service = service();
+
+		assertEquals(Optional.of(FIRST), service.find(storage, "key-a", FIRST.name()));
+		assertTrue(service.find(storage, "key-b", SECOND.name()).isEmpty());
+	}
+
+	@Test
+	void skipsALineCutInsideAField() throws IOException {
+		write("key-a\ta_preview.mp4\t1200\t" + CREATED + "\nkey-b\tb_preview.mp4\t3400\t2024-05-01T10:0");
+
+		ArtifactDedupServiceImpl service = service();
+
+		assertEquals(Optional.of(FIRST), service.find(storage, "key-a", FIRST.name()));
+		assertTrue(service.find(storage, "key-b", SECOND.name()).isEmpty());
+	}
+
+	@Test
+	void skipsALineWithAnUnreadableSize() throws IOException {
+		write("key-b\tb_preview.mp4\t34x0\t" + CREATED + "\n");
+
+		assertTrue(service().find(storage, "key-b", SECOND.name()).isEmpty());
+	}
+
+	@Test
+	void startsTheNextEntryOnALineOfItsOwnAfterATornOne() throws IOException {
+		write("key-a\ta_preview.mp4\t1200\t" + CREATED + "\nkey-x\tx_prev");
+		service().record("key-b", SECOND);
+
+		ArtifactDedupServiceImpl restarted = service();
+
+		assertEquals(Optional.of(FIRST), restarted.find(storage, "key-a", FIRST.name()));
+		assertEquals(Optional.of(SECOND), restarted.find(storage, "key-b", SECOND.name()));
+	}
+
+	@Test
+	void ignoresTheIndexWhenDisabled() throws IOException {
+		service().record("key-a", FIRST);
+
+		ArtifactDedupServiceImpl disabled = new ArtifactDedupServiceImpl(new SimpleMeterRegistry(), false,
+				indexFile);
+
+		assertTrue(disabled.find(storage, "key-a", FIRST.name()).isEmpty());
+	}
+
+	private ArtifactDedupServiceImpl service() throws IOException {
+		return new ArtifactDedupServiceImpl(new SimpleMeterRegistry(), true, indexFile);
+	}
+
+	private void write(String content) throws IOException {
+		Files.createDirectories(indexFile.getParent());
+		Files.writeString(indexFile, content, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.JobCheckpoint;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CheckpointServiceImplTests {
+
+	@TempDir
+	Path root;
+
+	private CheckpointServiceImpl checkpointService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		checkpointService = new CheckpointServiceImpl(new SimpleMeterRegistry(), root, 3, Duration.ZERO,
+				Duration.ZERO, Duration.ofHours(24));
+	}
+
+	@Test
+	void refusesASecondAttemptWhileTheFirstHoldsTheCheckpoint() throws Exception {
+		try (JobCheckpoint first = checkpointService.open("preview-1", "etag-a")) {
+			first.put("size", "42");
+
+			CheckpointLockedException e = assertThrows(CheckpointLockedException.class,
+					() -> checkpointService.open("preview-1", "etag-b"));
+			assertEquals("preview-1", e.getJobKey());
+			// The refused attempt left the first one's state alone, even with another source version.
+			assertEquals("42", first.get("size"));
+			assertTrue(Files.exists(first.getDir().resolve(JobCheckpoint.STATE_FILE)));
+		}
+	}
+
+	@Test
+	void locksEveryJobOnItsOwn() throws Exception {
+		try (JobCheckpoint preview = checkpointService.open("preview-1", "etag-a");
+				JobCheckpoint thumbnail = checkpointService.open("thumbnail-1", "etag-a")) {
+			assertFalse(preview.getDir().equals(thumbnail.getDir()));
+		}
+	}
+
+	@Test
+	void opensAgainOnceTheFirstAttemptIsClosed() throws Exception {
+		JobCheckpoint first = checkpointService.open("preview-1", "etag-a");
+		first.close();
+		assertFalse(Files.exists(first.getDir()));
+
+		try (JobCheckpoint second = checkpointService.open("preview-1", "etag-a")) {
+			assertTrue(Files.isDirectory(second.getDir()));
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.dark.videostreaming.transcoding.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.dark.videostreaming.transcoding.event.model.PreviewUpdateEvent;
+import com.dark.videostreaming.transcoding.event.producer.StatusPublisher;
+import com.dark.videostreaming.transcoding.metrics.PipelineMetrics;
+import com.dark.videostreaming.transcoding.service.AdmissionController;
+import com.dark.videostreaming.transcoding.service.ArtifactDedupService;
+import com.dark.videostreaming.transcoding.service.CheckpointLockedException;
+import com.dark.videostreaming.transcoding.service.CheckpointService;
+import com.dark.videostreaming.transcoding.service.FfmpegSupervisor;
+import com.dark.videostreaming.transcoding.service.JobWorkspace;
+import com.dark.videostreaming.transcoding.service.PreviewStorageService;
+import com.dark.videostreaming.transcoding.service.SourceInputService;
+import com.dark.videostreaming.transcoding.service.ThumbnailSelectionService;
+import com.dark.videostreaming.transcoding.service.ThumbnailStorageService;
+import com.dark.videostreaming.transcoding.service.TranscodingScheduler;
+import com.dark.videostreaming.transcoding.service.model.ObjectInfo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ThumbnailGenerationServiceImplTests {
+
+	@TempDir
+	Path root;
+
+	@Mock
+	private PreviewStorageService previewStorageService;
+	@Mock
+	private ThumbnailStorageService thumbnailStorageService;
+	@Mock
+	private StatusPublisher statusPublisher;
+	@Mock
+	private TranscodingScheduler transcodingScheduler;
+	@Mock
+	private SourceInputService sourceInputService;
+	@Mock
+	private PipelineMetrics pipelineMetrics;
+	@Mock
+	private FfmpegSupervisor ffmpegSupervisor;
+	@Mock
+	private AdmissionController admissionController;
+	@Mock
+	private CheckpointService checkpointService;
+	@Mock
+	private ArtifactDedupService artifactDedupService;
+	@Mock
+	private ThumbnailSelectionService thumbnailSelectionService;
+
+	@InjectMocks
+	private ThumbnailGenerationServiceImpl thumbnailGenerationService;
+
+	@Test
+	void skipsADuplicateDeliveryWithoutReportingAFailure() throws Exception {
+		when(transcodingScheduler.submit(anyString(), any(), any())).thenAnswer(invocation -> {
+			invocation.getArgument(2, Runnable.class).run();
+			return CompletableFuture.completedFuture(null);
+		});
+		Path workspaceDir = Files.createDirectory(root.resolve("workspace"));
+		when(transcodingScheduler.openWorkspace(anyString())).thenReturn(new JobWorkspace(workspaceDir, () -> {
+		}));
+		when(previewStorageService.stat("preview.mp4"))
+				.thenReturn(new ObjectInfo("previews", "preview.mp4", 1024, "etag", Map.of()));
+		when(artifactDedupService.contentKey(any(), anyString())).thenReturn("key");
+		when(artifactDedupService.find(any(), anyString(), anyString())).thenReturn(Optional.empty());
+		when(checkpointService.open("thumbnail-7", "etag")).thenThrow(new CheckpointLockedException("thumbnail-7"));
+
+		CompletableFuture<Void> job = thumbnailGenerationService.generateThumbnail(PreviewUpdateEvent.builder()
+				.videoId(7)
+				.name("preview.mp4")
+				.size(1024)
+				.status("ready")
+				.build());
+
+		// Completes normally, so SimpleConsumer neither dead-letters the record nor sees a failure.
+		job.join();
+		verify(statusPublisher, never()).publish(anyString(), anyLong(), eq("failed"), any());
+		verify(sourceInputService, never()).open(any(), any(), any(), any());
+	}
+
+}